@@ -43,7 +43,8 @@ public final class Lab3 {
      * The main entry point of the application.
      *
      * If a log file exists and the user decides to replay the previous game, a new
-     * {@link GameRunner} instance is created based on the game state stored in the log file.
+     * {@link GameRunner} instance is created based on the game state stored in the log file,
+     * resumed from its latest checkpoint.
      * Otherwise, a new game is started with a fresh instance of {@link GameRunner}.
      *
      * If there is an issue with restoring the previous game state, a new game is started
@@ -55,9 +56,9 @@ public final class Lab3 {
         try {
             // check if a log file exists and ask the user if they want to replay the previous game
             if (new File(AppConfig.getLogFilePath()).exists() && askForReplay()) {
-                new Replayer().runReplay();
+                new Replayer().resume();
             }
-        } catch (IOException | URISyntaxException | NumberFormatException | IndexOutOfBoundsException e) {
+        } catch (IOException | URISyntaxException | IllegalArgumentException | IndexOutOfBoundsException e) {
             // In case there was a problem restoring previous game, just create a new game.
             System.out.printf("%sThere was a problem restoring previous game. Starting a new Game!.%s%n",
                     AppConfig.COLOR_ERROR_MSG, AppConfig.COLOR_RESET);
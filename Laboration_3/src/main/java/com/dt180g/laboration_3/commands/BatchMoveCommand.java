@@ -0,0 +1,100 @@
+package com.dt180g.laboration_3.commands;
+
+import com.dt180g.laboration_3.receiver.HanoiEngine;
+import com.dt180g.laboration_3.receiver.MoveCode;
+import com.dt180g.laboration_3.support.HanoiLogger;
+
+import java.util.List;
+
+/**
+ * BatchMoveCommand encapsulates a sequence of moves applied as one unit. The batch is
+ * validated and applied all-or-nothing through {@link HanoiEngine#performMoves(int[], int[], boolean)},
+ * written to the journal in a single entry, and undone or redone as a whole.
+ *
+ * The journal holds the same lines as the moves executed one by one would, so logs stay
+ * replayable move by move; an undo is journaled as undoing the amount of moves of the batch.
+ *
+ * @author Muntaser Ibrahim
+ */
+public class BatchMoveCommand implements UndoableCommand {
+    private final HanoiEngine engine;
+    private final HanoiLogger logger;
+    private final int[] src, dst;
+
+    /**
+     * Constructs a batch of moves on the default game.
+     *
+     * @param src the index of the tower to move a disc from, per move
+     * @param dst the index of the tower to move a disc to, per move
+     */
+    public BatchMoveCommand(int[] src, int[] dst) {
+        this(HanoiEngine.INSTANCE, HanoiLogger.getInstance(), src, dst);
+    }
+
+    /**
+     * Constructs a batch of moves acting on the given engine and journal.
+     *
+     * @param engine the engine to perform the moves on
+     * @param logger the journal to record the moves in
+     * @param src    the index of the tower to move a disc from, per move
+     * @param dst    the index of the tower to move a disc to, per move
+     * @throws IllegalArgumentException if the amounts differ, or there are no moves.
+     */
+    public BatchMoveCommand(HanoiEngine engine, HanoiLogger logger, int[] src, int[] dst) {
+        if (src.length != dst.length)
+            throw new IllegalArgumentException("Source and destination amounts differ.");
+        if (src.length == 0) throw new IllegalArgumentException("A batch needs at least one move.");
+        this.engine = engine; this.logger = logger;
+        this.src = src.clone(); this.dst = dst.clone();
+    }
+
+    /**
+     * Merges single moves into one batch. All moves need to act on the same engine and journal.
+     *
+     * @param moves the moves, in order of execution.
+     * @return the batch of the moves.
+     */
+    public static BatchMoveCommand of(List<MoveCommand> moves) {
+        if (moves.isEmpty()) throw new IllegalArgumentException("A batch needs at least one move.");
+        MoveCommand first = moves.get(0);
+        int[] src = new int[moves.size()], dst = new int[moves.size()];
+        for (int i = 0; i < src.length; i++) {
+            MoveCommand m = moves.get(i);
+            if (m.getEngine() != first.getEngine() || m.getLogger() != first.getLogger())
+                throw new IllegalArgumentException("A batch needs to act on a single game.");
+            src[i] = m.getSource();
+            dst[i] = m.getDestination();
+        }
+        return new BatchMoveCommand(first.getEngine(), first.getLogger(), src, dst);
+    }
+
+    /** Performs all moves of the batch, then logs them in one write. */
+    @Override
+    public void execute() {
+        engine.performMoves(src, dst, true);
+        logger.logMoves(src, dst);
+    }
+
+    /** Reverses all moves of the batch, then logs the undo as a single entry. */
+    @Override
+    public void unExecute() {
+        int n = src.length;
+        int[] from = new int[n], to = new int[n];
+        for (int i = 0; i < n; i++) {
+            from[i] = dst[n-1-i];
+            to[i] = src[n-1-i];
+        }
+        engine.performMoves(from, to, false);
+        logger.logUndo(n);
+    }
+
+    @Override
+    public int[] getMoveCodes() {
+        int[] codes = new int[src.length];
+        for (int i = 0; i < codes.length; i++) codes[i] = MoveCode.of(src[i], dst[i]);
+        return codes;
+    }
+
+    /** @return amount of moves in the batch. */
+    public int size() { return src.length; }
+}
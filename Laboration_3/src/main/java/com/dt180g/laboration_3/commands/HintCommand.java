@@ -0,0 +1,41 @@
+package com.dt180g.laboration_3.commands;
+
+import com.dt180g.laboration_3.receiver.HanoiEngine;
+import com.dt180g.laboration_3.receiver.MoveCode;
+import com.dt180g.laboration_3.support.AppConfig;
+
+/**
+ * Concrete command, used to show a hint on how to reach the goal. The command prints
+ * the first move of the shortest path from the current game state, as computed by
+ * {@link HanoiEngine#nextBestMove()}, together with the amount of moves left. Where no
+ * move is hinted, it tells why.
+ *
+ * @author Muntaser Ibrahim
+ */
+public class HintCommand implements CommandInterface {
+    private final HanoiEngine engine;
+
+    /** Default constructor for hint command, hinting the default game. */
+    public HintCommand() { this(HanoiEngine.INSTANCE); }
+
+    /** @param engine the engine whose game to hint. */
+    public HintCommand(HanoiEngine engine) { this.engine = engine; }
+
+    /** Executes the hint command. */
+    @Override public void execute() {
+        if (!engine.hasHints()) {
+            System.out.printf("%sNo hints are available for %d discs on %d towers, as no distance table covers the game.%s%n",
+                    AppConfig.COLOR_ERROR_MSG, engine.getDiscAmount(), engine.getTowerAmount(), AppConfig.COLOR_RESET);
+            return;
+        }
+        int move = engine.nextBestMove();
+        if (move < 0) {
+            System.out.printf("%sHint: %s%s%n", AppConfig.COLOR_HINT, engine.isGameCompleted()
+                    ? "the game is already completed." : "no move leads closer to the goal.", AppConfig.COLOR_RESET);
+            return;
+        }
+        System.out.printf("%sHint: move T%d to T%d (%s moves left)%s%n", AppConfig.COLOR_HINT,
+                MoveCode.from(move), MoveCode.to(move),
+                Long.toUnsignedString(engine.distanceToGoal()), AppConfig.COLOR_RESET);
+    }
+}
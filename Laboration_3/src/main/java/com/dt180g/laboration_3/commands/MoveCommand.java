@@ -1,7 +1,9 @@
 package com.dt180g.laboration_3.commands;
 
-import com.dt180g.laboration_3.support.AppConfig;
 import com.dt180g.laboration_3.receiver.HanoiEngine;
+import com.dt180g.laboration_3.receiver.MoveCode;
+import com.dt180g.laboration_3.receiver.MoveResult;
+import com.dt180g.laboration_3.validation.InvalidMoveException;
 import com.dt180g.laboration_3.support.HanoiLogger;
 
 /**
@@ -11,16 +13,31 @@ import com.dt180g.laboration_3.support.HanoiLogger;
  *
  * @author Muntaser Ibrahim
  */
-public class MoveCommand implements CommandInterface {
+public class MoveCommand implements UndoableCommand {
+    private final HanoiEngine engine;
+    private final HanoiLogger logger;
     private final int src, dst;
 
     /**
-     * Constructs a Move from source and destination towers.
+     * Constructs a Move from source and destination towers of the default game.
      *
      * @param src the index of the tower to move a disc from
      * @param dst the index of the tower to move a disc to
      */
     public MoveCommand(int src, int dst) {
+        this(HanoiEngine.INSTANCE, HanoiLogger.getInstance(), src, dst);
+    }
+
+    /**
+     * Constructs a Move acting on the given engine and journal.
+     *
+     * @param engine the engine to perform the move on
+     * @param logger the journal to record the move in
+     * @param src    the index of the tower to move a disc from
+     * @param dst    the index of the tower to move a disc to
+     */
+    public MoveCommand(HanoiEngine engine, HanoiLogger logger, int src, int dst) {
+        this.engine = engine; this.logger = logger;
         this.src = src; this.dst = dst;
     }
 
@@ -29,14 +46,33 @@ public class MoveCommand implements CommandInterface {
      */
     @Override
     public void execute() {
-        HanoiEngine.INSTANCE.performMove(src, dst, true);
-        HanoiLogger.getInstance().logInfo(src + " " + dst);
+        int result = tryExecute();
+        if (result != MoveResult.OK) throw new InvalidMoveException(MoveResult.message(result));
+    }
+
+    /**
+     * Attempts the disc transfer without throwing, logging the move only if it is valid.
+     *
+     * @return {@link MoveResult#OK}, or the code telling why the move is invalid.
+     */
+    public int tryExecute() {
+        int result = engine.tryMove(src, dst);
+        if (result == MoveResult.OK) logger.logMove(src, dst);
+        return result;
     }
 
     /** Reverses the move and logs the undo symbol. */
+    @Override
     public void unExecute() {
-        HanoiEngine.INSTANCE.performMove(dst, src, false);
-        HanoiLogger.getInstance().logInfo(AppConfig.LOG_UNDO_SYMBOL);
+        engine.performMove(dst, src, false);
+        logger.logUndo(1);
     }
-}
 
+    @Override
+    public int[] getMoveCodes() { return new int[]{MoveCode.of(src, dst)}; }
+
+    HanoiEngine getEngine()   { return engine; }
+    HanoiLogger getLogger()   { return logger; }
+    int getSource()           { return src; }
+    int getDestination()      { return dst; }
+}
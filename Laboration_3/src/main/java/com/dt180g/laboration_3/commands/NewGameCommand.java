@@ -5,33 +5,69 @@ import com.dt180g.laboration_3.support.HanoiLogger;
 import com.dt180g.laboration_3.support.AppConfig;
 
 /**
- * NewGameCommand initializes or restarts a Towers of Hanoi game with a specified number of discs.
- * It ensures the disc count is within the limits, resets the engine and logger, and logs the initial count.
+ * NewGameCommand initializes or restarts a Towers of Hanoi game with a specified number of discs
+ * and towers. It rejects a disc or tower count outside its limits, resets the engine and logger,
+ * and logs the initial counts.
  *
  * @author Muntaser Ibrahim
  */
 public class NewGameCommand implements CommandInterface {
-    private final int discs;
+    private final HanoiEngine engine;
+    private final HanoiLogger logger;
+    private final int discs, towers;
 
     /**
-     * Constructs a NewGameCommand with the disc count.
+     * Constructs a NewGameCommand with the disc count, using the default amount of towers.
      *
      * @param discs the desired number of discs to start the game
+     * @throws IllegalArgumentException if the number of discs is outside the limits of {@link AppConfig}
      */
     public NewGameCommand(int discs) {
+        this(discs, AppConfig.TOWERS_AMOUNT);
+    }
+
+    /**
+     * Constructs a NewGameCommand with the disc and tower count.
+     *
+     * @param discs  the desired number of discs to start the game
+     * @param towers the desired number of towers to play on
+     * @throws IllegalArgumentException if either number is outside the limits of {@link AppConfig}
+     */
+    public NewGameCommand(int discs, int towers) {
+        this(HanoiEngine.INSTANCE, HanoiLogger.getInstance(), discs, towers);
+    }
+
+    /**
+     * Constructs a NewGameCommand acting on the given engine and journal.
+     *
+     * @param engine the engine to reset
+     * @param logger the journal to restart
+     * @param discs  the desired number of discs to start the game
+     * @param towers the desired number of towers to play on
+     * @throws IllegalArgumentException if either number is outside the limits of {@link AppConfig}
+     */
+    public NewGameCommand(HanoiEngine engine, HanoiLogger logger, int discs, int towers) {
+        if (discs < AppConfig.DISC_AMOUNT_MINIMUM || discs > AppConfig.DISC_AMOUNT_MAXIMUM)
+            throw new IllegalArgumentException(String.format("Invalid disc amount %d, only values between %d and %d are allowed.",
+                    discs, AppConfig.DISC_AMOUNT_MINIMUM, AppConfig.DISC_AMOUNT_MAXIMUM));
+        if (towers < AppConfig.TOWERS_AMOUNT_MINIMUM || towers > AppConfig.TOWERS_AMOUNT_MAXIMUM)
+            throw new IllegalArgumentException(String.format("Invalid tower amount %d, only values between %d and %d are allowed.",
+                    towers, AppConfig.TOWERS_AMOUNT_MINIMUM, AppConfig.TOWERS_AMOUNT_MAXIMUM));
+        this.engine = engine;
+        this.logger = logger;
         this.discs = discs;
+        this.towers = towers;
     }
 
     /**
      * Executes the new game command: resets the engine, resets the logger,
-     * and logs the starting disc count.
+     * and logs the starting disc count. The tower count is only logged when
+     * it differs from the default, which keeps three-tower logs unchanged.
      */
     @Override
     public void execute() {
-        int count = Math.min(Math.max(discs, AppConfig.DISC_AMOUNT_MINIMUM),
-                AppConfig.DISC_AMOUNT_MAXIMUM);
-        HanoiEngine.INSTANCE.resetGame(count);
-        HanoiLogger.getInstance().resetLogger();
-        HanoiLogger.getInstance().logInfo(String.valueOf(count));
+        engine.resetGame(discs, towers);
+        logger.resetLogger();
+        logger.logHeader(discs, towers);
     }
 }
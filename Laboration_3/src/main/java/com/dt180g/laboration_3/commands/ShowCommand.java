@@ -10,11 +10,16 @@ import com.dt180g.laboration_3.receiver.HanoiEngine;
  * @author Erik Ström
  */
 public class ShowCommand implements CommandInterface {
-    /** Default constructor for show command. */
-    public ShowCommand() { }
+    private final HanoiEngine engine;
+
+    /** Default constructor for show command, showing the default game. */
+    public ShowCommand() { this(HanoiEngine.INSTANCE); }
+
+    /** @param engine the engine whose state to show. */
+    public ShowCommand(HanoiEngine engine) { this.engine = engine; }
 
     /** Executes the show command. */
     @Override public void execute() {
-        HanoiEngine.INSTANCE.showGameStateASCII();
+        engine.showGameStateASCII();
     }
 }
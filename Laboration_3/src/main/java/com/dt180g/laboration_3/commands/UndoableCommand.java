@@ -0,0 +1,15 @@
+package com.dt180g.laboration_3.commands;
+
+/**
+ * A command moving discs, whose effect can be reversed. The undo/redo history keeps only
+ * the packed moves of such commands.
+ *
+ * @author Muntaser Ibrahim
+ */
+public interface UndoableCommand extends CommandInterface {
+    /** Operation that reverses the command's execution. */
+    void unExecute();
+
+    /** @return packed {@link com.dt180g.laboration_3.receiver.MoveCode} of each move, in order of execution. */
+    int[] getMoveCodes();
+}
@@ -1,72 +1,376 @@
 package com.dt180g.laboration_3.invoker;
 
 import com.dt180g.laboration_3.commands.*;
+import com.dt180g.laboration_3.receiver.HanoiEngine;
+import com.dt180g.laboration_3.receiver.MoveCode;
+import com.dt180g.laboration_3.receiver.MoveResult;
+import com.dt180g.laboration_3.support.AppConfig;
+import com.dt180g.laboration_3.support.HanoiLogger;
+import com.dt180g.laboration_3.support.JournalRecord;
 import com.dt180g.laboration_3.validation.InvalidMoveException;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.Arrays;
+import java.util.List;
 
 /**
- * Singleton manager responsible for executing game commands, as well as undoing and redoing moves
- * in the Towers of Hanoi application. It maintains two stacks (undo and redo) of MoveCommand
- * objects to track history and support reversal of actions.
+ * Manager responsible for executing game commands, as well as undoing and redoing moves of a game
+ * in the Towers of Hanoi application. The undo/redo history is kept as packed move codes in a
+ * {@link MoveHistory}, rather than as command objects, so long sessions stay compact.
  *
- * NewGameCommand clears both stacks to reset history. MoveCommand instances are pushed to
- * the undo stack on execution, and popped/pushed between undo and redo stacks on undo/redo.
+ * NewGameCommand clears the history. MoveCommand and BatchMoveCommand instances are recorded on
+ * execution; undo and redo replay the recorded moves on the manager's engine, and journal a
+ * single undo or redo entry. A batch is a single history entry.
+ *
+ * {@link #undoTo(long)} and {@link #redoTo(long)} jump to any position of the history, starting
+ * from the nearest engine checkpoint kept in the history, or from the current position if closer.
+ *
+ * Moves made after undoing start a new branch of an {@link UndoTree}, keeping the undone moves
+ * as a branch of their own; {@link #switchBranch(int)} returns to any branch.
+ *
+ * Every {@link AppConfig#getJournalCheckpointInterval()} moves, a checkpoint of the game is
+ * journaled, from which a resume may start instead of replaying the whole journal.
+ *
+ * {@link #replay(long[], int, int)} restores a journaled game in bulk, straight onto the engine
+ * and history, without journaling it again.
+ *
+ * {@link #INSTANCE} manages the default game; every {@link GameSession} owns a manager of its own.
  *
  * @author Muntaser Ibrahim
  */
 public class CommandManager {
-    public static final CommandManager INSTANCE = new CommandManager();
+    public static final CommandManager INSTANCE = new CommandManager(HanoiEngine.INSTANCE, HanoiLogger.getInstance());
 
-    private final Deque<MoveCommand> undoStack = new ArrayDeque<>(),
-            redoStack = new ArrayDeque<>();
+    private final HanoiEngine engine;
+    private final HanoiLogger journal;
+    private final MoveHistory history = new MoveHistory();
+    private final UndoTree tree = new UndoTree();
+    private long uncheckpointed = 0;
 
-    private CommandManager() { }
+    private CommandManager(HanoiEngine engine, HanoiLogger journal) {
+        this.engine = engine;
+        this.journal = journal;
+    }
+
+    /**
+     * @param engine  the engine the moves of the session act on.
+     * @param journal the journal of the session.
+     * @return a new manager with empty history, for a game session of its own.
+     */
+    public static CommandManager newInstance(HanoiEngine engine, HanoiLogger journal) {
+        return new CommandManager(engine, journal);
+    }
 
     /** Clears both undo and redo history. Used by NewGameCommand. */
     private void clearMoves() {
-        undoStack.clear();
-        redoStack.clear();
+        history.clear();
+        tree.clear();
+        history.checkpoint(engine.getState(), engine.getMoves());
+        uncheckpointed = 0;
+    }
+
+    /**
+     * Restores the game from a checkpoint, clearing the history. The journal records the
+     * checkpoint, so that it leads to the restored state as well.
+     *
+     * @param towers disc mask per tower, as many as the towers of the current game.
+     * @param moves  amount of moves made.
+     * @throws IllegalArgumentException if the towers hold no valid game.
+     */
+    public void restore(long[] towers, long moves) {
+        if (towers.length != engine.getTowerAmount())
+            throw new IllegalArgumentException("Invalid tower amount: " + towers.length);
+        engine.loadState(towers, moves);
+        clearMoves();
+        journal.logCheckpoint(engine.getState(), moves, history.getCursor());
+    }
+
+    /**
+     * Restores a journaled game in bulk: runs of moves are validated and applied to the engine in
+     * one batch each, and recorded as a history entry per move, as when played one by one. Nothing
+     * is journaled or shown. An invalid move of the journal is reported and left out. A checkpoint
+     * restores its state unless the game already is in it, clearing the history; an undo past the
+     * start of the history stops there.
+     *
+     * The records may be handed over in parts, each continuing the game of the previous one.
+     *
+     * @param records {@link JournalRecord}s of the game, starting with its header in the first part.
+     * @param offset  index of the first record.
+     * @param length  amount of records.
+     * @return amount of records replayed; a checkpoint cut short at the end is left for the next part.
+     * @throws IllegalArgumentException if a record is unknown, or a redo goes past the history.
+     */
+    public int replay(long[] records, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; ) {
+            long record = records[i];
+            switch (JournalRecord.type(record)) {
+                case JournalRecord.MOVE -> {
+                    int run = i + 1;
+                    while (run < end && JournalRecord.type(records[run]) == JournalRecord.MOVE) run++;
+                    replayMoves(records, i, run);
+                    i = run;
+                    continue;
+                }
+                case JournalRecord.HEADER -> {
+                    engine.resetGame(JournalRecord.discs(record), JournalRecord.towers(record));
+                    clearMoves();
+                }
+                case JournalRecord.CHECKPOINT -> {
+                    int words = JournalRecord.checkpointLength(record);
+                    if (words > end - i) return i - offset;
+                    if (!JournalRecord.isCheckpoint(records, i, words)) {
+                        i += words;
+                        continue;
+                    }
+                    long[] towers = JournalRecord.checkpointTowers(records, i);
+                    long moves = JournalRecord.checkpointMoves(records, i);
+                    if (moves != engine.getMoves() || !Arrays.equals(towers, engine.getState())) {
+                        if (towers.length != engine.getTowerAmount())
+                            throw new IllegalArgumentException("Invalid tower amount: " + towers.length);
+                        engine.loadState(towers, moves);
+                        clearMoves();
+                    }
+                    i += words;
+                    continue;
+                }
+                case JournalRecord.UNDO -> jumpTo(Math.max(0, history.getCursor() - JournalRecord.amount(record)));
+                case JournalRecord.REDO -> jumpTo(history.getCursor() + JournalRecord.amount(record));
+                default -> throw new IllegalArgumentException("Unknown journal record: " + Long.toHexString(record));
+            }
+            i++;
+        }
+        return length;
+    }
+
+    /* applies a run of moves in batches ending where the history is due a checkpoint */
+    private void replayMoves(long[] records, int start, int end) {
+        int interval = AppConfig.getHistoryCheckpointInterval();
+        for (int i = start; i < end; ) {
+            int n = (int) Math.min(end - i, Math.max(1, history.movesToCheckpoint(interval)));
+            int[] from = new int[n], to = new int[n], codes = new int[n];
+            for (int k = 0; k < n; k++) {
+                from[k] = JournalRecord.from(records[i + k]);
+                to[k] = JournalRecord.to(records[i + k]);
+                codes[k] = MoveCode.of(from[k], to[k]);
+            }
+            try {
+                engine.performMoves(from, to, true);
+                if (history.getCursor() < history.getSize()) tree.fork(history);
+                history.recordEach(codes, 0, n);
+            } catch (InvalidMoveException e) {
+                for (int k = 0; k < n; k++) {
+                    int result = engine.tryMove(from[k], to[k]);
+                    if (result != MoveResult.OK) {
+                        System.out.println(InvalidMoveException.format(MoveResult.message(result)));
+                        continue;
+                    }
+                    if (history.getCursor() < history.getSize()) tree.fork(history);
+                    history.recordEach(codes, k, 1);
+                }
+            }
+            if (history.needsCheckpoint(interval)) history.checkpoint(engine.getState(), engine.getMoves());
+            i += n;
+        }
     }
 
     /**
-     * Executes a command. NewGameCommand clears history; MoveCommand pushes to undo and clears redo.
-     * Invalid moves are caught and reported.
+     * Executes a command. NewGameCommand clears history; undoable commands are recorded and clear redo.
+     * Invalid moves are reported; single moves are validated without throwing.
      */
     public void executeCommand(CommandInterface cmd) {
+        if (cmd instanceof MoveCommand) {
+            int result = tryRecord((MoveCommand)cmd);
+            if (result != MoveResult.OK) System.out.println(InvalidMoveException.format(MoveResult.message(result)));
+            return;
+        }
         try {
-            cmd.execute();
-            if (cmd instanceof NewGameCommand) {
-                clearMoves();
-            } else if (cmd instanceof MoveCommand) {
-                undoStack.push((MoveCommand)cmd);
-                redoStack.clear();
-            }
+            run(cmd);
         } catch (InvalidMoveException e) {
             System.out.println(e.getMessage());
         }
     }
 
+    /**
+     * Attempts a move on the manager's game without throwing or printing, recording it if valid.
+     *
+     * @param from source tower (1-based).
+     * @param to   destination tower (1-based).
+     * @return {@link MoveResult#OK}, or the code telling why the move is invalid.
+     */
+    public int tryMove(int from, int to) {
+        return tryRecord(new MoveCommand(engine, journal, from, to));
+    }
+
+    private int tryRecord(MoveCommand cmd) {
+        int result = cmd.tryExecute();
+        if (result == MoveResult.OK) record(cmd);
+        return result;
+    }
+
+    /** Executes a command like {@link #executeCommand(CommandInterface)}, but lets invalid moves through. */
+    void run(CommandInterface cmd) {
+        cmd.execute();
+        if (cmd instanceof NewGameCommand) {
+            clearMoves();
+        } else if (cmd instanceof UndoableCommand) {
+            record((UndoableCommand)cmd);
+        }
+    }
+
+    private void record(UndoableCommand cmd) {
+        if (history.getCursor() < history.getSize()) tree.fork(history);
+        int[] codes = cmd.getMoveCodes();
+        history.record(codes);
+        if (history.needsCheckpoint(AppConfig.getHistoryCheckpointInterval()))
+            history.checkpoint(engine.getState(), engine.getMoves());
+        int interval = AppConfig.getJournalCheckpointInterval();
+        uncheckpointed += codes.length;
+        if (interval > 0 && uncheckpointed >= interval) {
+            journal.logCheckpoint(engine.getState(), engine.getMoves(), history.getCursor());
+            uncheckpointed = 0;
+        }
+    }
+
+    /**
+     * Executes moves as a single batch: validated all-or-nothing, journaled in one write and
+     * kept as one history entry. An invalid batch is reported and leaves the game untouched.
+     *
+     * @param moves moves acting on the same game, in order of execution.
+     */
+    public void executeCommands(List<MoveCommand> moves) {
+        if (!moves.isEmpty()) executeCommand(BatchMoveCommand.of(moves));
+    }
+
     /** Undoes the last move if available. */
     public void undoMove() {
-        if (!undoStack.isEmpty()) {
-            MoveCommand m = undoStack.pop();
-            m.unExecute();
-            redoStack.push(m);
-        }
+        int[] codes = history.undo();
+        if (codes == null) return;
+        apply(codes, false);
+        journal.logUndo(codes.length);
     }
 
     /** Redoes the last undone move if available. */
     public void redoMove() {
-        if (!redoStack.isEmpty()) {
-            MoveCommand m = redoStack.pop();
-            m.execute();
-            undoStack.push(m);
+        int[] codes = history.redo();
+        if (codes == null) return;
+        apply(codes, true);
+        journal.logRedo(codes.length);
+    }
+
+    /**
+     * Undoes all moves after a position of the history, journaled as a single entry.
+     *
+     * @param position amount of moves to keep, at the end of a history entry.
+     * @throws IllegalArgumentException if the position is ahead of the current one, or inside a batch.
+     */
+    public void undoTo(long position) {
+        if (position > history.getCursor())
+            throw new IllegalArgumentException("Cannot undo to a later position: " + position);
+        long moves = history.getCursor() - position;
+        jumpTo(position);
+        if (moves > 0) journal.logUndo(moves);
+    }
+
+    /**
+     * Redoes all undone moves up to a position of the history, journaled as a single entry.
+     *
+     * @param position amount of moves to have made, at the end of a history entry.
+     * @throws IllegalArgumentException if the position is behind the current one, or inside a batch.
+     */
+    public void redoTo(long position) {
+        if (position < history.getCursor())
+            throw new IllegalArgumentException("Cannot redo to an earlier position: " + position);
+        long moves = position - history.getCursor();
+        jumpTo(position);
+        if (moves > 0) journal.logRedo(moves);
+    }
+
+    /**
+     * Switches to another branch of the undo tree, ending up after its last move. Only the moves
+     * since the branches diverged are undone and replayed. The journal records the undo as a single
+     * entry, followed by the moves of the branch.
+     *
+     * @param branch the branch to switch to, see {@link #getBranchAmount()}.
+     * @throws IllegalArgumentException if there is no such branch.
+     */
+    public void switchBranch(int branch) {
+        if (branch < 0 || branch >= tree.getAmount())
+            throw new IllegalArgumentException("No such branch: " + branch);
+        tree.flush(history);
+        boolean other = branch != tree.getActive();
+        long divergence = other ? tree.divergence(branch) : history.getSize();
+        if (history.getCursor() > divergence) undoTo(divergence);
+        if (other) tree.activate(branch, divergence, history);
+
+        // replays towards the end of the branch, journaling and checkpointing every interval
+        int interval = AppConfig.getHistoryCheckpointInterval();
+        while (history.getCursor() < history.getSize()) {
+            long next = Math.min(history.getSize(), history.getCursor() + interval);
+            while (!history.isBoundary(next)) next++;
+            int[] codes = history.codes(history.getCursor(), next);
+            apply(codes, true);
+            int[] from = new int[codes.length], to = new int[codes.length];
+            for (int i = 0; i < codes.length; i++) {
+                from[i] = MoveCode.from(codes[i]);
+                to[i] = MoveCode.to(codes[i]);
+            }
+            journal.logMoves(from, to);
+            history.moveCursor(next, -1);
+            if (history.needsCheckpoint(interval)) history.checkpoint(engine.getState(), engine.getMoves());
+        }
+    }
+
+    /* moves the engine to a history position, replaying from the closest checkpoint or the cursor */
+    private void jumpTo(long position) {
+        if (!history.isBoundary(position))
+            throw new IllegalArgumentException("No history entry ends at position: " + position);
+        long cursor = history.getCursor();
+        int checkpoint = history.checkpointBefore(position);
+        if (checkpoint >= 0 && position - history.checkpointPosition(checkpoint) < Math.abs(position - cursor)) {
+            engine.loadState(history.checkpointTowers(checkpoint), history.checkpointMoves(checkpoint));
+            apply(history.codes(history.checkpointPosition(checkpoint), position), true);
+        } else if (position < cursor) {
+            apply(history.codes(position, cursor), false);
+            checkpoint = -1;
+        } else {
+            apply(history.codes(cursor, position), true);
+            checkpoint = -1;
+        }
+        history.moveCursor(position, checkpoint);
+    }
+
+    /* performs moves in order, or reverses them in reverse order, as one batch on the engine */
+    private void apply(int[] codes, boolean forward) {
+        if (codes.length == 1) {
+            int code = forward ? codes[0] : MoveCode.reverse(codes[0]);
+            engine.performMove(MoveCode.from(code), MoveCode.to(code), forward);
+            return;
+        }
+        int n = codes.length;
+        int[] from = new int[n], to = new int[n];
+        for (int i = 0; i < n; i++) {
+            int code = forward ? codes[i] : MoveCode.reverse(codes[n-1-i]);
+            from[i] = MoveCode.from(code);
+            to[i] = MoveCode.to(code);
         }
+        engine.performMoves(from, to, forward);
     }
 
-    /** @return number of moves available to undo. */
-    public int getUndoAmount() { return undoStack.size(); }
-    /** @return number of moves available to redo. */
-    public int getRedoAmount() { return redoStack.size(); }
+    /** @return amount of branches in the undo tree, numbered from 0 in order of creation. */
+    public int getBranchAmount() { return tree.getAmount(); }
+    /** @return the branch of the current line of play. */
+    public int getBranch() { return tree.getActive(); }
+    /** @return the branch a branch forked from, or -1 for the first branch. */
+    public int getBranchParent(int branch) { return tree.getParent(branch); }
+    /** @return amount of moves a branch shares with its parent. */
+    public long getBranchFork(int branch) { return tree.getFork(branch); }
+    /** @return amount of moves on the line of a branch, from the start of the game. */
+    public long getBranchEnd(int branch) { return tree.getEnd(branch, history); }
+
+    /** @return amount of moves in the history before the current position. */
+    public long getPosition() { return history.getCursor(); }
+
+    /** @return number of history entries available to undo, at most {@link Integer#MAX_VALUE}. */
+    public int getUndoAmount() { return (int) Math.min(history.getUndoAmount(), Integer.MAX_VALUE); }
+    /** @return number of history entries available to redo, at most {@link Integer#MAX_VALUE}. */
+    public int getRedoAmount() { return (int) Math.min(history.getRedoAmount(), Integer.MAX_VALUE); }
 }
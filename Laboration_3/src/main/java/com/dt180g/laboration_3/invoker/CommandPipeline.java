@@ -0,0 +1,139 @@
+package com.dt180g.laboration_3.invoker;
+
+import com.dt180g.laboration_3.commands.CommandInterface;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous front of a {@link CommandManager}. Any amount of producer threads submit commands
+ * into a bounded lock-free ring buffer, and a single sequencer thread executes them on the manager
+ * in the order their slots were claimed. Each submission returns a future, completed once its
+ * command has run, or completed exceptionally with what the command threw, such as an
+ * {@link com.dt180g.laboration_3.validation.InvalidMoveException}. An error thrown by a command
+ * fails its future as well, and the sequencer goes on with the next command.
+ *
+ * The ring follows the bounded multi-producer design by Dmitry Vyukov: a producer claims a slot by
+ * a compare-and-set on the tail, and each slot carries a sequence number telling whether it is
+ * free or holds a published command. A full ring makes producers wait, which bounds the backlog.
+ *
+ * While a pipeline is open, its manager, engine and journal belong to the sequencer thread and
+ * should only be driven through the pipeline.
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class CommandPipeline implements AutoCloseable {
+    /* set in the tail once closed, so that no slot can be claimed after closing */
+    private static final long CLOSED = Long.MIN_VALUE;
+    private static final int SPINS = 64;
+
+    private final CommandManager manager;
+    private final Object[] commands;
+    private final CompletableFuture<?>[] futures;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head = 0;
+    private final Thread sequencer;
+    private volatile boolean waiting = false;
+
+    /**
+     * Starts a pipeline and its sequencer thread.
+     *
+     * @param manager  the manager to execute the commands on.
+     * @param capacity amount of commands the ring holds, rounded up to a power of two.
+     */
+    public CommandPipeline(CommandManager manager, int capacity) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("Invalid pipeline capacity: " + capacity);
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.manager = manager;
+        this.commands = new Object[size];
+        this.futures = new CompletableFuture<?>[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+        sequencer = new Thread(this::sequence, "hanoi-sequencer");
+        sequencer.setDaemon(true);
+        sequencer.start();
+    }
+
+    /**
+     * Enqueues a command, waiting while the ring is full.
+     *
+     * @param command the command to execute.
+     * @return future completed once the command has been executed.
+     * @throws IllegalStateException if the pipeline is closed.
+     */
+    public CompletableFuture<Void> submit(CommandInterface command) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        long position;
+        int spins = 0;
+        while (true) {
+            position = tail.get();
+            if ((position & CLOSED) != 0) throw new IllegalStateException("The pipeline is closed.");
+            long free = sequences.get((int) position & mask) - position;
+            if (free == 0) {
+                if (tail.compareAndSet(position, position + 1)) break;
+            } else if (free < 0) {
+                // the ring is full; wait for the sequencer to free the slot
+                if (++spins < SPINS) Thread.onSpinWait();
+                else LockSupport.parkNanos(1_000);
+            }
+        }
+        int slot = (int) position & mask;
+        commands[slot] = command;
+        futures[slot] = future;
+        sequences.set(slot, position + 1);
+        if (waiting) LockSupport.unpark(sequencer);
+        return future;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void sequence() {
+        while (true) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) == head + 1) {
+                CommandInterface command = (CommandInterface) commands[slot];
+                CompletableFuture<Void> future = (CompletableFuture<Void>) futures[slot];
+                commands[slot] = null;
+                futures[slot] = null;
+                sequences.set(slot, head + mask + 1);
+                head++;
+                try {
+                    manager.run(command);
+                    future.complete(null);
+                } catch (Throwable e) {
+                    // an error too, or the sequencer would die and leave every producer waiting
+                    future.completeExceptionally(e);
+                }
+                continue;
+            }
+            long last = tail.get();
+            if ((last & CLOSED) != 0) {
+                if (head == (last & ~CLOSED)) return;
+                Thread.onSpinWait(); // a claimed slot is about to be published
+                continue;
+            }
+            waiting = true;
+            if (sequences.get(slot) != head + 1 && (tail.get() & CLOSED) == 0) LockSupport.park(this);
+            waiting = false;
+        }
+    }
+
+    /**
+     * Stops accepting commands, and waits for the sequencer to execute the commands already submitted.
+     */
+    @Override
+    public void close() {
+        tail.getAndUpdate(t -> t | CLOSED);
+        LockSupport.unpark(sequencer);
+        try {
+            sequencer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.dt180g.laboration_3.invoker;
+
+import com.dt180g.laboration_3.commands.BatchMoveCommand;
+import com.dt180g.laboration_3.commands.HintCommand;
+import com.dt180g.laboration_3.commands.MoveCommand;
+import com.dt180g.laboration_3.commands.NewGameCommand;
+import com.dt180g.laboration_3.commands.ShowCommand;
+import com.dt180g.laboration_3.receiver.HanoiEngine;
+import com.dt180g.laboration_3.support.AppConfig;
+import com.dt180g.laboration_3.support.HanoiLogger;
+
+/**
+ * A single game of Towers of Hanoi, owning its engine state, undo/redo history and journal.
+ * Sessions share no mutable state with each other, so any amount of them can live in one JVM
+ * and be driven from different threads. A session itself is not thread-safe, and is meant to
+ * be confined to one thread at a time.
+ *
+ * The default session wraps the singletons used by the interactive game.
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class GameSession {
+    private static final GameSession DEFAULT = new GameSession(
+            HanoiEngine.INSTANCE, CommandManager.INSTANCE, HanoiLogger.getInstance());
+
+    private final HanoiEngine engine;
+    private final CommandManager manager;
+    private final HanoiLogger journal;
+
+    private GameSession(HanoiEngine engine, CommandManager manager, HanoiLogger journal) {
+        this.engine = engine;
+        this.manager = manager;
+        this.journal = journal;
+    }
+
+    /**
+     * Creates a session without a journal and starts a game.
+     *
+     * @param discs  amount of discs.
+     * @param towers amount of towers.
+     */
+    public GameSession(int discs, int towers) {
+        this(discs, towers, HanoiLogger.disabled());
+    }
+
+    /**
+     * Creates a session recording to the given journal and starts a game.
+     *
+     * @param discs   amount of discs.
+     * @param towers  amount of towers.
+     * @param journal journal of this session, see {@link HanoiLogger#forFile(String)}.
+     */
+    public GameSession(int discs, int towers, HanoiLogger journal) {
+        this(new HanoiEngine(), journal);
+        newGame(discs, towers);
+    }
+
+    /**
+     * Creates a session recording to the given journal, without starting a game, so that a game
+     * can be replayed into it from the journal's own log file.
+     *
+     * @param journal journal of this session, not opened until a game is started or replayed.
+     */
+    public GameSession(HanoiLogger journal) {
+        this(new HanoiEngine(), journal);
+    }
+
+    private GameSession(HanoiEngine engine, HanoiLogger journal) {
+        this(engine, CommandManager.newInstance(engine, journal), journal);
+    }
+
+    /** @return the session of the default game. */
+    public static GameSession getDefault() { return DEFAULT; }
+
+    /**
+     * Starts a new game in this session, clearing its history.
+     *
+     * @param discs amount of discs, using the default amount of towers.
+     */
+    public void newGame(int discs) { newGame(discs, AppConfig.TOWERS_AMOUNT); }
+
+    /**
+     * Starts a new game in this session, clearing its history.
+     *
+     * @param discs  amount of discs.
+     * @param towers amount of towers.
+     * @throws IllegalArgumentException if the amount of discs or towers is out of bounds.
+     */
+    public void newGame(int discs, int towers) {
+        manager.executeCommand(new NewGameCommand(engine, journal, discs, towers));
+    }
+
+    /**
+     * Restores the game of this session from a checkpoint, clearing its history.
+     *
+     * @param towers disc mask per tower, see {@link CommandManager#restore(long[], long)}.
+     * @param moves  amount of moves made.
+     */
+    public void restore(long[] towers, long moves) { manager.restore(towers, moves); }
+
+    /**
+     * Restores a journaled game in this session, without journaling or showing it.
+     *
+     * @param records the records of the game, see {@link CommandManager#replay(long[], int, int)}.
+     * @param offset  index of the first record.
+     * @param length  amount of records.
+     * @return amount of records replayed.
+     */
+    public int replay(long[] records, int offset, int length) { return manager.replay(records, offset, length); }
+
+    /**
+     * Moves a disc between two towers of this session.
+     *
+     * @param from source tower (1-based).
+     * @param to   destination tower (1-based).
+     */
+    public void move(int from, int to) {
+        manager.executeCommand(new MoveCommand(engine, journal, from, to));
+    }
+
+    /**
+     * Attempts a move in this session without throwing or printing.
+     *
+     * @param from source tower (1-based).
+     * @param to   destination tower (1-based).
+     * @return {@link com.dt180g.laboration_3.receiver.MoveResult#OK}, or the code telling why the move is invalid.
+     */
+    public int tryMove(int from, int to) { return manager.tryMove(from, to); }
+
+    /**
+     * Moves discs as one batch, applied all-or-nothing and undone as a whole.
+     *
+     * @param from source tower (1-based) per move.
+     * @param to   destination tower (1-based) per move.
+     * @throws IllegalArgumentException if the amounts differ, or there are no moves.
+     */
+    public void moves(int[] from, int[] to) {
+        manager.executeCommand(new BatchMoveCommand(engine, journal, from, to));
+    }
+
+    /** Undoes the last move of this session, if any. */
+    public void undoMove() { manager.undoMove(); }
+
+    /** Redoes the last undone move of this session, if any. */
+    public void redoMove() { manager.redoMove(); }
+
+    /**
+     * Undoes all moves of this session after a position of its history.
+     *
+     * @param position amount of moves to keep, see {@link CommandManager#undoTo(long)}.
+     */
+    public void undoTo(long position) { manager.undoTo(position); }
+
+    /**
+     * Redoes undone moves of this session up to a position of its history.
+     *
+     * @param position amount of moves to have made, see {@link CommandManager#redoTo(long)}.
+     */
+    public void redoTo(long position) { manager.redoTo(position); }
+
+    /**
+     * Switches this session to another branch of its undo tree.
+     *
+     * @param branch the branch to switch to, see {@link CommandManager#switchBranch(int)}.
+     */
+    public void switchBranch(int branch) { manager.switchBranch(branch); }
+
+    /**
+     * Rewrites the journal of this session to its net game, see {@link HanoiLogger#compact()}.
+     * Replaying the compacted journal restores the current position and the moves to redo.
+     */
+    public void compactJournal() { journal.compact(); }
+
+    /** Prints a hint on the next move towards completing the game of this session. */
+    public void hint() { manager.executeCommand(new HintCommand(engine)); }
+
+    /** Prints the current game state of this session. */
+    public void show() { manager.executeCommand(new ShowCommand(engine)); }
+
+    /**
+     * Opens an asynchronous pipeline onto this session. Until it is closed, the session should
+     * only be driven through the pipeline, using commands built on {@link #getEngine()} and
+     * {@link #getJournal()}.
+     *
+     * @param capacity amount of commands the pipeline buffers.
+     * @return the started pipeline.
+     */
+    public CommandPipeline openPipeline(int capacity) { return new CommandPipeline(manager, capacity); }
+
+    public HanoiEngine getEngine()      { return engine; }
+    public CommandManager getManager()  { return manager; }
+    public HanoiLogger getJournal()     { return journal; }
+}
@@ -0,0 +1,247 @@
+package com.dt180g.laboration_3.invoker;
+
+import com.dt180g.laboration_3.support.AppConfig;
+
+import java.util.Arrays;
+
+/**
+ * Undo/redo history of a {@link CommandManager}, stored as one byte per move instead of one
+ * object per move. The history is a single tape: the entries before the cursor can be undone,
+ * the entries from the cursor on can be redone, and recording a new entry drops the latter.
+ *
+ * Each byte holds a packed {@link com.dt180g.laboration_3.receiver.MoveCode}. Entries of several
+ * moves, such as batches, mark every move after the first with {@link #JOIN}.
+ *
+ * The tape is kept in {@link PackedBytes}, spilling to a memory-mapped file past
+ * {@link AppConfig#getHistoryHeapLimit()} moves.
+ *
+ * Alongside the tape, the history keeps checkpoints of the engine state about every
+ * {@link AppConfig#getHistoryCheckpointInterval()} moves, taken at entry boundaries. A jump to
+ * any position then only needs to replay the moves from the nearest checkpoint or the cursor.
+ *
+ * @author Muntaser Ibrahim
+ */
+final class MoveHistory {
+    static final int JOIN = 0x40, CODE = 0x3F;
+    private final PackedBytes tape = new PackedBytes();
+
+    private long size = 0, cursor = 0;
+    private long undoEntries = 0, redoEntries = 0;
+
+    /* checkpoints in order of position, each as: position, entries before it, move counter, tower masks */
+    private static final int CP_POSITION = 0, CP_ENTRIES = 1, CP_MOVES = 2, CP_TOWERS = 3;
+    private long[] checkpoints = new long[0];
+    private int checkpointAmount = 0, checkpointStride = 0;
+
+    /** Drops all entries, releasing any spill file. */
+    void clear() {
+        size = cursor = undoEntries = redoEntries = 0;
+        checkpointAmount = 0;
+        tape.clear();
+    }
+
+    /**
+     * Records an entry after the cursor, dropping all entries available to redo.
+     *
+     * @param codes packed move codes of the entry, in order of execution.
+     */
+    void record(final int[] codes) {
+        if (codes.length == 0) return;
+        drop(codes.length);
+        tape.put(size++, codes[0]);
+        for (int i = 1; i < codes.length; i++) tape.put(size++, codes[i] | JOIN);
+        cursor = size;
+        undoEntries++;
+    }
+
+    /**
+     * Records moves after the cursor as an entry each, dropping all entries available to redo.
+     *
+     * @param codes  packed move codes, in order of execution.
+     * @param offset index of the first move.
+     * @param length amount of moves.
+     */
+    void recordEach(final int[] codes, final int offset, final int length) {
+        if (length == 0) return;
+        drop(length);
+        for (int i = 0; i < length; i++) tape.put(size++, codes[offset + i]);
+        cursor = size;
+        undoEntries += length;
+    }
+
+    /* drops the entries after the cursor, and makes room for an amount of moves */
+    private void drop(final int moves) {
+        size = cursor;
+        redoEntries = 0;
+        while (checkpointAmount > 0 && checkpointPosition(checkpointAmount - 1) > cursor) checkpointAmount--;
+        tape.ensureCapacity(size + moves);
+    }
+
+    /** @return the move codes of the entry before the cursor, moving the cursor back; or null. */
+    int[] undo() {
+        if (cursor == 0) return null;
+        long start = cursor - 1;
+        while ((get(start) & JOIN) != 0) start--;
+        int[] codes = read(start, cursor);
+        cursor = start;
+        undoEntries--;
+        redoEntries++;
+        return codes;
+    }
+
+    /** @return the move codes of the entry at the cursor, moving the cursor past it; or null. */
+    int[] redo() {
+        if (cursor == size) return null;
+        long end = cursor + 1;
+        while (end < size && (get(end) & JOIN) != 0) end++;
+        int[] codes = read(cursor, end);
+        cursor = end;
+        redoEntries--;
+        undoEntries++;
+        return codes;
+    }
+
+    /**
+     * @param interval least amount of moves between checkpoints.
+     * @return whether the cursor is far enough past the last checkpoint for a new one.
+     */
+    boolean needsCheckpoint(final long interval) {
+        long last = checkpointAmount == 0 ? 0 : checkpointPosition(checkpointAmount - 1);
+        return checkpointAmount == 0 || cursor - last >= interval;
+    }
+
+    /**
+     * @param interval least amount of moves between checkpoints.
+     * @return amount of moves the cursor may advance before a new checkpoint is due, 0 if it is due.
+     */
+    long movesToCheckpoint(final long interval) {
+        int last = checkpointBefore(cursor);
+        return last < 0 ? 0 : Math.max(0, checkpointPosition(last) + interval - cursor);
+    }
+
+    /**
+     * Keeps the engine state at the cursor as a checkpoint.
+     *
+     * @param towers bitmask per tower of the engine.
+     * @param moves  move counter of the engine.
+     */
+    void checkpoint(final long[] towers, final long moves) {
+        if (checkpointAmount > 0 && checkpointPosition(checkpointAmount - 1) == cursor) return;
+        if (checkpointAmount == 0) checkpointStride = CP_TOWERS + towers.length;
+        int base = checkpointAmount * checkpointStride;
+        if (base + checkpointStride > checkpoints.length)
+            checkpoints = Arrays.copyOf(checkpoints, Math.max(2 * checkpoints.length, base + checkpointStride));
+        checkpoints[base + CP_POSITION] = cursor;
+        checkpoints[base + CP_ENTRIES] = undoEntries;
+        checkpoints[base + CP_MOVES] = moves;
+        System.arraycopy(towers, 0, checkpoints, base + CP_TOWERS, towers.length);
+        checkpointAmount++;
+    }
+
+    /** @return index of the last checkpoint at or before a position, or -1 if there is none. */
+    int checkpointBefore(final long position) {
+        int low = 0, high = checkpointAmount - 1, found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (checkpointPosition(mid) <= position) {
+                found = mid;
+                low = mid + 1;
+            } else high = mid - 1;
+        }
+        return found;
+    }
+
+    long checkpointPosition(final int index) { return checkpoints[index * checkpointStride + CP_POSITION]; }
+    long checkpointMoves(final int index)    { return checkpoints[index * checkpointStride + CP_MOVES]; }
+
+    /** @return copy of the tower masks of a checkpoint. */
+    long[] checkpointTowers(final int index) {
+        int base = index * checkpointStride + CP_TOWERS;
+        return Arrays.copyOfRange(checkpoints, base, base + checkpointStride - CP_TOWERS);
+    }
+
+    /** @return whether a position is the start or end of an entry. */
+    boolean isBoundary(final long position) {
+        return position >= 0 && position <= size && (position == size || (get(position) & JOIN) == 0);
+    }
+
+    /**
+     * Moves the cursor to an entry boundary, counting the entries passed from a known base.
+     *
+     * @param position   the new cursor.
+     * @param checkpoint index of the checkpoint to count from, or -1 to count from the old cursor.
+     */
+    void moveCursor(final long position, final int checkpoint) {
+        long base = checkpoint < 0 ? cursor : checkpointPosition(checkpoint);
+        long entries = checkpoint < 0 ? undoEntries : checkpoints[checkpoint * checkpointStride + CP_ENTRIES];
+        long total = undoEntries + redoEntries;
+        for (long p = Math.min(base, position); p < Math.max(base, position); p++) {
+            if ((get(p) & JOIN) == 0) entries += position > base ? 1 : -1;
+        }
+        cursor = position;
+        undoEntries = entries;
+        redoEntries = total - entries;
+    }
+
+    /**
+     * Drops the tape after a position at or past the cursor, along with its checkpoints.
+     *
+     * @param position the new end of the tape.
+     */
+    void truncate(final long position) {
+        long entries = 0;
+        for (long p = cursor; p < position; p++) if ((get(p) & JOIN) == 0) entries++;
+        size = position;
+        redoEntries = entries;
+        while (checkpointAmount > 0 && checkpointPosition(checkpointAmount - 1) > size) checkpointAmount--;
+    }
+
+    /**
+     * Appends stored moves, flags included, to the end of the tape as entries to redo.
+     *
+     * @param source bytes holding the moves, starting at an entry.
+     * @param offset position of the first move in the source.
+     * @param length amount of moves.
+     */
+    void append(final PackedBytes source, final long offset, final long length) {
+        tape.ensureCapacity(size + length);
+        for (long i = 0; i < length; i++) {
+            int code = source.get(offset + i);
+            if ((code & JOIN) == 0) redoEntries++;
+            tape.put(size++, code);
+        }
+    }
+
+    /**
+     * Copies moves of the tape, flags included, into other storage.
+     *
+     * @param start  position of the first move on the tape.
+     * @param end    position after the last move on the tape.
+     * @param target bytes to copy to.
+     * @param offset position in the target to copy to.
+     */
+    void copyTo(final long start, final long end, final PackedBytes target, final long offset) {
+        target.ensureCapacity(offset + end - start);
+        for (long p = start; p < end; p++) target.put(offset + p - start, get(p));
+    }
+
+    /** @return packed move codes of the tape between two positions, without flags. */
+    int[] codes(final long start, final long end) { return read(start, end); }
+
+    long getUndoAmount()  { return undoEntries; }
+    long getRedoAmount()  { return redoEntries; }
+    /** @return amount of moves before the cursor. */
+    long getCursor()      { return cursor; }
+    /** @return amount of moves on the tape. */
+    long getSize()        { return size; }
+    boolean isSpilled()   { return tape.isSpilled(); }
+
+    /** @return move code at a position of the tape, with its {@link #JOIN} flag. */
+    int get(final long position) { return tape.get(position); }
+
+    private int[] read(final long start, final long end) {
+        int[] codes = new int[(int) (end - start)];
+        for (int i = 0; i < codes.length; i++) codes[i] = get(start + i) & CODE;
+        return codes;
+    }
+}
@@ -0,0 +1,95 @@
+package com.dt180g.laboration_3.invoker;
+
+import com.dt180g.laboration_3.support.AppConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable array of bytes addressed by long positions, backing the move storage of the history.
+ * It lives in heap up to {@link AppConfig#getHistoryHeapLimit()} bytes, at most the largest array,
+ * and is then moved to a memory-mapped temporary file, growing in segments. The file is deleted
+ * when closed by {@link #clear()}, or already once opened where the system allows it, leaving
+ * nothing to delete on exit. Its segments are unmapped once no longer referenced.
+ *
+ * @author Muntaser Ibrahim
+ */
+final class PackedBytes {
+    private static final int SEGMENT_BITS = 26, SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+    /* some virtual machines reserve header words in an array */
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+    private byte[] heap = new byte[64];
+    private FileChannel spill;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /** Drops all contents, releasing any spill file. */
+    void clear() {
+        heap = new byte[64];
+        if (spill == null) return;
+        segments.clear();
+        try {
+            spill.close(); // deletes the file
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to release history spill file", e);
+        } finally {
+            spill = null;
+        }
+    }
+
+    boolean isSpilled() { return spill != null; }
+
+    int get(final long position) {
+        return spill == null ? heap[(int) position]
+                : segments.get((int) (position >>> SEGMENT_BITS)).get((int) (position & SEGMENT_MASK));
+    }
+
+    void put(final long position, final int value) {
+        if (spill == null) heap[(int) position] = (byte) value;
+        else segments.get((int) (position >>> SEGMENT_BITS)).put((int) (position & SEGMENT_MASK), (byte) value);
+    }
+
+    /** Makes positions below the given capacity addressable, spilling to a file past the heap limit. */
+    void ensureCapacity(final long capacity) {
+        if (spill == null) {
+            if (capacity <= heap.length) return;
+            long limit = Math.min(AppConfig.getHistoryHeapLimit(), MAX_ARRAY);
+            if (capacity <= limit) {
+                long grown = Math.max(capacity, Math.min(2L * heap.length, limit));
+                heap = Arrays.copyOf(heap, (int) grown);
+                return;
+            }
+            spillToFile();
+        }
+        try {
+            while (((long) segments.size() << SEGMENT_BITS) < capacity) {
+                segments.add(spill.map(FileChannel.MapMode.READ_WRITE,
+                        (long) segments.size() << SEGMENT_BITS, 1L << SEGMENT_BITS));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow history spill file", e);
+        }
+    }
+
+    private void spillToFile() {
+        try {
+            Path file = Files.createTempFile("hanoi-history", ".bin");
+            spill = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create history spill file", e);
+        }
+        byte[] moved = heap;
+        heap = null;
+        ensureCapacity(moved.length);
+        for (int i = 0; i < moved.length; i++) put(i, moved[i]);
+    }
+}
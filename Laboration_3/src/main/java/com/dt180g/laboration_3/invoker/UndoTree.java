@@ -0,0 +1,130 @@
+package com.dt180g.laboration_3.invoker;
+
+import java.util.Arrays;
+
+/**
+ * Branches of the undo tree of a {@link CommandManager}. Making a move after undoing no longer
+ * drops the moves that were undone; they live on as a branch, and the session can switch back.
+ *
+ * A branch shares all moves before its fork position with its parent, and stores only its own
+ * moves, packed one byte each in a common pool. Per branch, the tree holds a few primitives in
+ * parallel arrays, so trees with millions of moves stay small. The active branch is the one laid
+ * out on the {@link MoveHistory} tape; its own moves are copied to the pool when it is left.
+ *
+ * @author Muntaser Ibrahim
+ */
+final class UndoTree {
+    static final int ROOT = 0;
+
+    private final PackedBytes pool = new PackedBytes();
+    private long poolSize = 0;
+
+    private int[] parent = new int[8], depth = new int[8];
+    private long[] fork = new long[8], offset = new long[8], length = new long[8];
+    private int amount = 0, active = ROOT;
+
+    UndoTree() { clear(); }
+
+    /** Drops all branches but an empty root, which becomes the active branch. */
+    void clear() {
+        pool.clear();
+        poolSize = 0;
+        amount = 0;
+        active = add(-1, 0);
+    }
+
+    private int add(final int parentBranch, final long forkPosition) {
+        if (amount == parent.length) {
+            int grown = 2 * amount;
+            parent = Arrays.copyOf(parent, grown);
+            depth = Arrays.copyOf(depth, grown);
+            fork = Arrays.copyOf(fork, grown);
+            offset = Arrays.copyOf(offset, grown);
+            length = Arrays.copyOf(length, grown);
+        }
+        parent[amount] = parentBranch;
+        depth[amount] = parentBranch < 0 ? 0 : depth[parentBranch] + 1;
+        fork[amount] = forkPosition;
+        offset[amount] = poolSize;
+        length[amount] = 0;
+        return amount++;
+    }
+
+    /** Copies the moves of the active branch not yet in the pool from the tape. */
+    void flush(final MoveHistory history) {
+        int b = active;
+        long own = history.getSize() - fork[b];
+        if (own <= length[b]) return;
+        if (offset[b] + length[b] == poolSize) {
+            history.copyTo(fork[b] + length[b], history.getSize(), pool, poolSize);
+            poolSize += own - length[b];
+        } else {
+            history.copyTo(fork[b], history.getSize(), pool, poolSize);
+            offset[b] = poolSize;
+            poolSize += own;
+        }
+        length[b] = own;
+    }
+
+    /**
+     * Starts a new active branch at the cursor of the tape, before a move is recorded after undos.
+     * The branch forks from the branch owning the moves right before the cursor.
+     */
+    void fork(final MoveHistory history) {
+        flush(history);
+        long cursor = history.getCursor();
+        int owner = active;
+        while (owner != ROOT && fork[owner] >= cursor) owner = parent[owner];
+        active = add(owner, cursor);
+    }
+
+    /**
+     * @param target a branch other than the active one.
+     * @return the length of the moves shared by the active branch and the target.
+     */
+    long divergence(final int target) {
+        int a = active, t = target, childA = -1, childT = -1;
+        while (depth[a] > depth[t]) { childA = a; a = parent[a]; }
+        while (depth[t] > depth[a]) { childT = t; t = parent[t]; }
+        while (a != t) {
+            childA = a; a = parent[a];
+            childT = t; t = parent[t];
+        }
+        long forkA = childA < 0 ? Long.MAX_VALUE : fork[childA];
+        long forkT = childT < 0 ? Long.MAX_VALUE : fork[childT];
+        return Math.min(forkA, forkT);
+    }
+
+    /**
+     * Lays out a branch on the tape after the shared moves, making it the active branch. The tape
+     * needs to be flushed, and its cursor at or before the divergence.
+     *
+     * @param target     the branch to switch to.
+     * @param divergence length of the moves shared with the active branch.
+     */
+    void activate(final int target, final long divergence, final MoveHistory history) {
+        int[] path = new int[depth[target] + 1];
+        int n = 0;
+        for (int b = target; b != ROOT && fork[b] >= divergence; b = parent[b]) path[n++] = b;
+        int first = n == 0 ? target : parent[path[n - 1]];
+        history.truncate(divergence);
+        long end = n == 0 ? fork[first] + length[first] : fork[path[n - 1]];
+        history.append(pool, offset[first] + divergence - fork[first], end - divergence);
+        for (int i = n - 1; i >= 0; i--) {
+            int b = path[i];
+            long stop = i == 0 ? length[b] : fork[path[i - 1]] - fork[b];
+            history.append(pool, offset[b], stop);
+        }
+        active = target;
+    }
+
+    int getAmount()                 { return amount; }
+    int getActive()                 { return active; }
+    int getParent(final int branch) { return parent[branch]; }
+    long getFork(final int branch)  { return fork[branch]; }
+
+    /** @return amount of moves on the line of a branch, from the start of the game. */
+    long getEnd(final int branch, final MoveHistory history) {
+        return branch == active ? history.getSize() : fork[branch] + length[branch];
+    }
+}
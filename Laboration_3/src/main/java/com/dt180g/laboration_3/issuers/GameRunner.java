@@ -1,13 +1,11 @@
 package com.dt180g.laboration_3.issuers;
 
+import com.dt180g.laboration_3.invoker.GameSession;
 import com.dt180g.laboration_3.receiver.HanoiEngine;
-import com.dt180g.laboration_3.invoker.CommandManager;
-import com.dt180g.laboration_3.commands.MoveCommand;
-import com.dt180g.laboration_3.commands.NewGameCommand;
-import com.dt180g.laboration_3.commands.ShowCommand;
+import com.dt180g.laboration_3.receiver.MoveResult;
 import com.dt180g.laboration_3.support.AppConfig;
-import com.dt180g.laboration_3.support.HanoiLogger;
 import com.dt180g.laboration_3.validation.InvalidInputException;
+import com.dt180g.laboration_3.validation.InvalidMoveException;
 
 import java.io.PrintStream;
 import java.util.Arrays;
@@ -27,10 +25,11 @@ import java.util.stream.Stream;
 public class GameRunner {
     private final Scanner in = new Scanner(System.in);
     private final PrintStream out = System.out;
+    private final GameSession session;
 
     private enum MenuOption {
         MOVE(1, "Perform Move"), UNDO(2, "Undo Move"), REDO(3, "Redo Move"),
-        NEW_GAME(4, "New Game"), EXIT(0, "Exit");
+        NEW_GAME(4, "New Game"), HINT(5, "Hint"), EXIT(0, "Exit");
 
         private final int value;
         private final String label;
@@ -52,12 +51,23 @@ public class GameRunner {
     }
 
     public GameRunner() {
-        HanoiEngine engine = HanoiEngine.INSTANCE;
+        this(GameSession.getDefault());
+    }
+
+    /** @param session the game session to play. */
+    public GameRunner(final GameSession session) {
+        this.session = session;
+        HanoiEngine engine = session.getEngine();
         if (engine.getDiscAmount() < AppConfig.DISC_AMOUNT_MINIMUM || engine.isGameCompleted()) {
-            CommandManager.INSTANCE.executeCommand(new NewGameCommand(queryDiscAmount()));
+            startNewGame();
         }
     }
 
+    private void startNewGame() {
+        int discs = queryDiscAmount();
+        session.newGame(discs, queryTowerAmount());
+    }
+
     private int queryDiscAmount() {
         out.printf("%sState amount of discs [%d..%d]%s%n",
                 AppConfig.COLOR_INPUT, AppConfig.DISC_AMOUNT_MINIMUM,
@@ -65,6 +75,13 @@ public class GameRunner {
         return getInput(AppConfig.DISC_AMOUNT_MINIMUM, AppConfig.DISC_AMOUNT_MAXIMUM);
     }
 
+    private int queryTowerAmount() {
+        out.printf("%sState amount of towers [%d..%d]%s%n",
+                AppConfig.COLOR_INPUT, AppConfig.TOWERS_AMOUNT_MINIMUM,
+                AppConfig.TOWERS_AMOUNT_MAXIMUM, AppConfig.COLOR_RESET);
+        return getInput(AppConfig.TOWERS_AMOUNT_MINIMUM, AppConfig.TOWERS_AMOUNT_MAXIMUM);
+    }
+
     private int getInput(final int min, final int max) {
         while (true) {
             try {
@@ -80,11 +97,12 @@ public class GameRunner {
     }
 
     private List<Integer> promptMove() {
+        int towers = session.getEngine().getTowerAmount();
         return Stream.of("Origin", "Destination")
                 .map(label -> {
                     out.printf("%n%sState %s Tower [1..%d]%s%n",
-                            AppConfig.COLOR_INPUT, label, AppConfig.TOWERS_AMOUNT, AppConfig.COLOR_RESET);
-                    return getInput(1, AppConfig.TOWERS_AMOUNT);
+                            AppConfig.COLOR_INPUT, label, towers, AppConfig.COLOR_RESET);
+                    return getInput(1, towers);
                 })
                 .collect(Collectors.toList());
     }
@@ -92,7 +110,7 @@ public class GameRunner {
     private void closeStreams() {
         in.close();
         out.close();
-        HanoiLogger.getInstance().closeLogger();
+        session.getJournal().closeLogger();
     }
 
     private void printOptionItems(final List<MenuOption> options) {
@@ -110,24 +128,27 @@ public class GameRunner {
         MenuOption[] opts = MenuOption.values();
         MenuOption sel;
         do {
-            CommandManager.INSTANCE.executeCommand(new ShowCommand());
+            session.show();
             printOptionItems(Arrays.asList(opts));
 
             sel = MenuOption.getByValue(getInput(0, opts.length - 1));
             switch (sel) {
                 case MOVE -> {
                     var mv = promptMove();
-                    CommandManager.INSTANCE.executeCommand(new MoveCommand(mv.get(0), mv.get(1)));
+                    int result = session.tryMove(mv.get(0), mv.get(1));
+                    if (result != MoveResult.OK)
+                        out.println(InvalidMoveException.format(MoveResult.message(result)));
                 }
-                case UNDO -> CommandManager.INSTANCE.undoMove();
-                case REDO -> CommandManager.INSTANCE.redoMove();
-                case NEW_GAME -> CommandManager.INSTANCE.executeCommand(new NewGameCommand(queryDiscAmount()));
+                case UNDO -> session.undoMove();
+                case REDO -> session.redoMove();
+                case NEW_GAME -> startNewGame();
+                case HINT -> session.hint();
                 case EXIT -> { closeStreams(); return; }
                 default -> throw new InvalidInputException("Invalid input.");
             }
-        } while (!HanoiEngine.INSTANCE.isGameCompleted());
+        } while (!session.getEngine().isGameCompleted());
 
-        CommandManager.INSTANCE.executeCommand(new ShowCommand());
+        session.show();
         out.printf("%n%s%s%s", AppConfig.COLOR_GAME_COMPLETE, AppConfig.GAME_COMPLETE, AppConfig.COLOR_RESET);
         closeStreams();
     }
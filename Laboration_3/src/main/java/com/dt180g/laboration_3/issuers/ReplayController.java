@@ -0,0 +1,376 @@
+package com.dt180g.laboration_3.issuers;
+
+import com.dt180g.laboration_3.commands.ShowCommand;
+import com.dt180g.laboration_3.invoker.GameSession;
+import com.dt180g.laboration_3.receiver.HanoiEngine;
+import com.dt180g.laboration_3.support.AppConfig;
+import com.dt180g.laboration_3.support.JournalFormat;
+import com.dt180g.laboration_3.support.JournalRecord;
+import com.dt180g.laboration_3.support.JournalScanner;
+import com.dt180g.laboration_3.support.PackedMoves;
+import com.dt180g.laboration_3.support.RecordSource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Seekable replay of a log file of any journal format. The frames of a replay are the states of
+ * the game after each entry of the log, numbered from 0 for the state after its header, and the
+ * controller can {@link #seek(long)} to any of them, or {@link #play(long)} towards one, forwards
+ * or backwards, at a speed and rate of rendered frames of its own.
+ *
+ * A seek is backed by a sparse index, kept in a file next to the log: every
+ * {@link AppConfig#getReplayIndexInterval()} entries, the position of the entry in the log and the
+ * state of the game there. A seek restores the closest indexed state before its target, and
+ * replays at most an interval of entries from there in bulk, without rendering them. An indexed
+ * state the entries after it undo or redo past is passed over for an earlier one, as a resume
+ * passes over such a checkpoint. The index is built by replaying the log once, and built again
+ * whenever the log has changed since.
+ *
+ * The game is restored in the given session, without journaling it. Not thread-safe.
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class ReplayController implements AutoCloseable {
+    /** "HNJX" followed by the format version. */
+    static final long INDEX_MAGIC = 0x484E4A58_00000001L;
+    /* bytes before the indexed states: magic, log size, log time, interval, stride, length, amount */
+    private static final int INDEX_HEADER = 3 * Long.BYTES + 2 * Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int PART = 1 << 12;
+    /* indexed states checked for a seek before starting over from the header */
+    private static final int ATTEMPTS = 2;
+
+    private final Path file;
+    private final GameSession session;
+    private final FileChannel channel;
+    private final JournalFormat format;
+    private final long header;
+    private final int towers;
+    private final int interval;
+    /* per indexed state: position of its entry in the log, move amount, disc mask per tower */
+    private final int stride;
+    private final ByteBuffer packed;
+    private final long[] part = new long[PART];
+    private int kept = 0;
+    private RecordSource source;
+    private long[] points = new long[0];
+    private int pointAmount = 0;
+    private long length;
+    private long position;
+    /* the indexed state restored, and the frame up to which the entries after it are checked */
+    private int restored;
+    private long checked;
+
+    private double speed = 1;
+    private int frameSkip = 1;
+    private long throttle = 0, frameDelay = 0;
+    private Consumer<HanoiEngine> renderer = engine -> new ShowCommand(engine).execute();
+
+    /**
+     * Opens a log for a seekable replay, loading its index or building it, and restores the first frame.
+     *
+     * @param file    the log file.
+     * @param session the session to restore the game in.
+     * @throws IOException              if the log cannot be read.
+     * @throws IllegalArgumentException if the log holds no game.
+     */
+    public ReplayController(Path file, GameSession session) throws IOException {
+        this.file = file;
+        this.session = session;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            this.format = JournalFormat.of(Replayer.read(channel, 0));
+            this.header = format == JournalFormat.TEXT ? new JournalScanner(channel).getHeader() : Replayer.header(channel);
+            this.towers = JournalRecord.towers(header);
+            this.interval = Math.max(1, AppConfig.getReplayIndexInterval());
+            this.stride = 2 + towers;
+            if (format == JournalFormat.PACKED) {
+                if (channel.size() > Integer.MAX_VALUE) throw new IllegalArgumentException("The log is too large to replay.");
+                this.packed = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } else {
+                this.packed = null;
+            }
+            if (!loadIndex()) {
+                buildIndex();
+                saveIndex();
+            }
+            restore(0);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** @return the frame shown, the amount of log entries replayed. */
+    public long getPosition() { return position; }
+
+    /** @return amount of entries in the log, the last frame. */
+    public long getLength() { return length; }
+
+    /**
+     * Restores the game at a frame without rendering it, from the current frame if it is on the
+     * way within an index interval, or else from the closest usable indexed state.
+     *
+     * @param frame the frame, clamped to the frames of the log.
+     */
+    public void seek(long frame) {
+        long target = Math.max(0, Math.min(frame, length));
+        if (target == position) return;
+        int point = (int) Math.min(target / interval, pointAmount - 1);
+        if (target > position && position >= (long) point * interval && isChecked(restored, target)) {
+            checked = Math.max(checked, target);
+            advance(target);
+            return;
+        }
+        for (int attempts = 1; !isChecked(point, target); attempts++)
+            point = attempts < ATTEMPTS ? point - 1 : 0;
+        restore(point);
+        checked = Math.max(checked, target);
+        advance(target);
+    }
+
+    /**
+     * Plays from the current frame to a target frame, forwards or backwards. A frame is rendered
+     * every {@link #setFrameSkip(int) frame skip} entries, each followed by a pause of the
+     * {@link #setFrameDelay(long) frame delay} divided by the {@link #setSpeed(double) speed}. With
+     * a {@link #setThrottle(long) throttle}, a frame due sooner than it after the previous one is
+     * skipped as well. The target frame is always rendered.
+     *
+     * @param frame the target frame, clamped to the frames of the log.
+     * @return amount of frames rendered.
+     */
+    public long play(long frame) {
+        long target = Math.max(0, Math.min(frame, length));
+        long frames = 0, rendered = System.nanoTime() - throttle;
+        while (position != target) {
+            seek(target > position ? Math.min(target, position + frameSkip) : Math.max(target, position - frameSkip));
+            long now = System.nanoTime();
+            if (position != target && throttle > 0 && now - rendered < throttle) continue;
+            renderer.accept(session.getEngine());
+            frames++;
+            rendered = now;
+            long pause = (long) (frameDelay / speed);
+            if (pause > 0) LockSupport.parkNanos(pause);
+        }
+        return frames;
+    }
+
+    /**
+     * Plays forwards, see {@link #play(long)}.
+     *
+     * @param entries amount of entries to play.
+     * @return amount of frames rendered.
+     */
+    public long fastForward(long entries) { return play(position + entries); }
+
+    /**
+     * Plays backwards, see {@link #play(long)}.
+     *
+     * @param entries amount of entries to play back.
+     * @return amount of frames rendered.
+     */
+    public long rewind(long entries) { return play(position - entries); }
+
+    /** @param speed multiplier of the pace of play, above 1 for faster. */
+    public void setSpeed(double speed) {
+        if (!(speed > 0)) throw new IllegalArgumentException("Invalid speed: " + speed);
+        this.speed = speed;
+    }
+
+    /** @param frameSkip amount of entries per rendered frame, 1 to render every frame. */
+    public void setFrameSkip(int frameSkip) {
+        if (frameSkip < 1) throw new IllegalArgumentException("Invalid frame skip: " + frameSkip);
+        this.frameSkip = frameSkip;
+    }
+
+    /** @param throttle least nanoseconds between rendered frames, 0 for no limit. */
+    public void setThrottle(long throttle) { this.throttle = Math.max(0, throttle); }
+
+    /** @param frameDelay nanoseconds to pause after each rendered frame at normal speed. */
+    public void setFrameDelay(long frameDelay) { this.frameDelay = Math.max(0, frameDelay); }
+
+    /** @param renderer renders a frame, by default showing the game state. */
+    public void setRenderer(Consumer<HanoiEngine> renderer) { this.renderer = renderer; }
+
+    /** Closes the log file. */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /* restores an indexed state, and goes on reading the log from its entry */
+    private void restore(int point) {
+        int base = point * stride;
+        long[] state = JournalRecord.checkpoint(Arrays.copyOfRange(points, base + 2, base + stride), points[base + 1], 0);
+        long[] records = new long[1 + state.length];
+        records[0] = header;
+        System.arraycopy(state, 0, records, 1, state.length);
+        session.replay(records, 0, records.length);
+        source = open(points[base]);
+        kept = 0;
+        position = (long) point * interval;
+        restored = point;
+        checked = point == 0 ? Long.MAX_VALUE : position;
+    }
+
+    /* whether the entries from an indexed state to a frame may be replayed from it, checking them unless known */
+    private boolean isChecked(int point, long target) {
+        return point == 0 || point == restored && target <= checked || isUsable(point, target);
+    }
+
+    /* applies the entries up to a frame in bulk; false if the log ends before */
+    private boolean advance(long target) {
+        while (position < target) {
+            // every entry takes a record at least, so no record after the target is read
+            int read = source.next(part, kept, (int) Math.min(part.length - kept, target - position));
+            if (read == 0) return false;
+            int filled = kept + read;
+            int replayed = session.replay(part, 0, filled);
+            position += entries(part, replayed);
+            kept = filled - replayed;
+            System.arraycopy(part, replayed, part, 0, kept);
+        }
+        return true;
+    }
+
+    /* amount of entries among records, a checkpoint being none */
+    private static long entries(long[] records, int length) {
+        long entries = 0;
+        for (int i = 0; i < length; i++) {
+            int type = JournalRecord.type(records[i]);
+            if (type == JournalRecord.CHECKPOINT) i += JournalRecord.checkpointLength(records[i]) - 1;
+            else if (type != JournalRecord.HEADER) entries++;
+        }
+        return entries;
+    }
+
+    /* whether the entries from an indexed state to a frame never undo or redo past its moves */
+    private boolean isUsable(int point, long target) {
+        RecordSource records = open(points[point * stride]);
+        long[] buffer = new long[PART];
+        long remaining = target - (long) point * interval, cursor = 0, size = 0;
+        int skip = 0;
+        for (int read; remaining > 0 && (read = records.next(buffer, 0, (int) Math.min(buffer.length, remaining))) > 0; ) {
+            for (int i = 0; i < read; i++) {
+                long record = buffer[i];
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                switch (JournalRecord.type(record)) {
+                    case JournalRecord.MOVE -> size = ++cursor;
+                    case JournalRecord.UNDO -> cursor -= JournalRecord.amount(record);
+                    case JournalRecord.REDO -> cursor += JournalRecord.amount(record);
+                    case JournalRecord.CHECKPOINT -> {
+                        skip = JournalRecord.checkpointLength(record) - 1;
+                        continue;
+                    }
+                    default -> { return false; }
+                }
+                remaining--;
+                if (cursor < 0 || cursor > size) return false;
+            }
+        }
+        return true;
+    }
+
+    /* a source of the records from a position of the log on */
+    private RecordSource open(long offset) {
+        try {
+            return switch (format) {
+                case TEXT -> new JournalScanner(channel, offset, header);
+                case BINARY -> new Replayer.BinaryRecords(channel, offset);
+                case PACKED -> new PackedMoves.Decoder(towers, packed.duplicate().position((int) (offset / 8)), (int) (offset % 8));
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read log", e);
+        }
+    }
+
+    /* replays the whole log once, keeping the state every interval of entries */
+    private void buildIndex() throws IOException {
+        long start = switch (format) {
+            case TEXT -> new JournalScanner(channel).getPosition();
+            case BINARY -> 2 * JournalRecord.SIZE;
+            case PACKED -> 2 * JournalRecord.SIZE * 8;
+        };
+        session.replay(new long[]{header}, 0, 1);
+        source = open(start);
+        kept = 0;
+        position = 0;
+        pointAmount = 0;
+        do {
+            if ((pointAmount + 1) * stride > points.length)
+                points = Arrays.copyOf(points, Math.max(16 * stride, 2 * points.length));
+            int base = pointAmount++ * stride;
+            // a binary checkpoint cut by the interval is read again from its start
+            points[base] = format == JournalFormat.BINARY ? source.getPosition() - (long) kept * JournalRecord.SIZE : source.getPosition();
+            points[base + 1] = session.getEngine().getMoves();
+            System.arraycopy(session.getEngine().getState(), 0, points, base + 2, towers);
+        } while (advance(position + interval));
+        length = position;
+    }
+
+    private Path indexFile() {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    /*
+     * an index is only used if the log is the same size and as old as when it was built, and its
+     * amount of states matches its length and the size of the file, so that a corrupt one is rebuilt
+     */
+    private boolean loadIndex() throws IOException {
+        Path index = indexFile();
+        if (!Files.exists(index)) return false;
+        long size = Files.size(index);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            if (in.readLong() != INDEX_MAGIC || in.readLong() != channel.size()
+                    || in.readLong() != Files.getLastModifiedTime(file).toMillis()
+                    || in.readInt() != interval || in.readInt() != stride) return false;
+            length = in.readLong();
+            pointAmount = in.readInt();
+            if (length < 0 || pointAmount != length / interval + 1
+                    || size - INDEX_HEADER != (long) pointAmount * stride * Long.BYTES) return false;
+            points = new long[pointAmount * stride];
+            for (int i = 0; i < points.length; i++) points[i] = in.readLong();
+            return pointAmount > 0;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /* written next to the index and moved over it, so that a crash leaves either index whole */
+    private void saveIndex() {
+        Path index = indexFile();
+        Path temp = index.resolveSibling(index.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeLong(INDEX_MAGIC);
+                out.writeLong(channel.size());
+                out.writeLong(Files.getLastModifiedTime(file).toMillis());
+                out.writeInt(interval);
+                out.writeInt(stride);
+                out.writeLong(length);
+                out.writeInt(pointAmount);
+                for (int i = 0; i < pointAmount * stride; i++) out.writeLong(points[i]);
+            }
+            Files.move(temp, index, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // an index that cannot be written is only kept in memory
+        }
+    }
+}
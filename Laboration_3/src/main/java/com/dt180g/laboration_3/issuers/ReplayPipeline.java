@@ -0,0 +1,140 @@
+package com.dt180g.laboration_3.issuers;
+
+import com.dt180g.laboration_3.support.RecordSource;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads ahead of a replay: a reader thread fills batches of records from a {@link RecordSource}
+ * into a bounded ring of reused arrays, while the replaying thread drains them through
+ * {@link #next(long[], int, int)}. Reading and parsing the log thereby overlap with applying the
+ * moves to the game, and a stalled disk only holds up the replay once the ring runs empty.
+ *
+ * The ring has a single producer and a single consumer, so each side only writes its own
+ * counter of batches. The time either side spends waiting for the other is measured.
+ *
+ * @author Muntaser Ibrahim
+ */
+final class ReplayPipeline implements RecordSource, AutoCloseable {
+    private static final int SPINS = 64;
+
+    private final RecordSource source;
+    private final long[][] batches;
+    private final int[] lengths;
+    private volatile long produced = 0, consumed = 0;
+    private volatile boolean ended = false, closed = false;
+    private volatile Throwable failure;
+    private final Thread reader;
+    private long readerStall = 0, applierStall = 0;
+    private long[] current;
+    private int at, length;
+
+    /**
+     * Starts a pipeline and its reader thread.
+     *
+     * @param source    the records to read ahead.
+     * @param depth     amount of batches read ahead.
+     * @param batchSize amount of records per batch.
+     */
+    ReplayPipeline(RecordSource source, int depth, int batchSize) {
+        if (depth < 1) throw new IllegalArgumentException("Invalid pipeline depth: " + depth);
+        this.source = source;
+        this.batches = new long[depth][batchSize];
+        this.lengths = new int[depth];
+        reader = new Thread(this::read, "hanoi-replay-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void read() {
+        try {
+            for (long batch = 0; !closed; batch++) {
+                long start = 0;
+                for (int spins = 0; batch - consumed == batches.length; spins++) {
+                    if (closed) return;
+                    if (start == 0) start = System.nanoTime();
+                    pause(spins);
+                }
+                if (start != 0) readerStall += System.nanoTime() - start;
+                int slot = (int) (batch % batches.length), filled = 0, read = 0;
+                long[] records = batches[slot];
+                while (filled < records.length && (read = source.next(records, filled, records.length - filled)) > 0)
+                    filled += read;
+                lengths[slot] = filled;
+                if (filled > 0) produced = batch + 1;
+                if (read == 0) return;
+            }
+        } catch (Throwable e) {
+            // an error too, or the replay would end early as if the log did
+            failure = e;
+        } finally {
+            ended = true;
+        }
+    }
+
+    /**
+     * Hands out the records read ahead, waiting for the reader while none are.
+     *
+     * @throws RuntimeException what the source threw, once the records read before are handed out,
+     *                          or an {@link IllegalStateException} wrapping an error it threw.
+     */
+    @Override
+    public int next(long[] records, int offset, int length) {
+        int n = 0;
+        while (n < length) {
+            if (current == null && !take()) break;
+            int amount = Math.min(length - n, this.length - at);
+            System.arraycopy(current, at, records, offset + n, amount);
+            at += amount;
+            n += amount;
+            if (at == this.length) {
+                current = null;
+                consumed = consumed + 1; // the only writer
+            }
+        }
+        return n;
+    }
+
+    /* takes the next batch, false once the source ended */
+    private boolean take() {
+        long start = 0;
+        for (int spins = 0; consumed == produced; spins++) {
+            if (ended && consumed == produced) {
+                Throwable e = failure;
+                if (e instanceof RuntimeException) throw (RuntimeException) e;
+                if (e != null) throw new IllegalStateException("The replay reader failed.", e);
+                return false;
+            }
+            if (start == 0) start = System.nanoTime();
+            pause(spins);
+        }
+        if (start != 0) applierStall += System.nanoTime() - start;
+        int slot = (int) (consumed % batches.length);
+        current = batches[slot];
+        length = lengths[slot];
+        at = 0;
+        return true;
+    }
+
+    private static void pause(int spins) {
+        if (spins < SPINS) Thread.onSpinWait();
+        else LockSupport.parkNanos(10_000);
+    }
+
+    /** @return nanoseconds the reader waited for a free batch, final once closed. */
+    long getReaderStall() { return readerStall; }
+
+    /** @return nanoseconds the replaying thread waited for a batch to be read. */
+    long getApplierStall() { return applierStall; }
+
+    /** Stops the reader, and waits for it to finish. */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,51 +1,461 @@
 package com.dt180g.laboration_3.issuers;
 
-import com.dt180g.laboration_3.commands.MoveCommand;
-import com.dt180g.laboration_3.commands.NewGameCommand;
 import com.dt180g.laboration_3.commands.ShowCommand;
-import com.dt180g.laboration_3.invoker.CommandManager;
+import com.dt180g.laboration_3.invoker.GameSession;
 import com.dt180g.laboration_3.support.AppConfig;
+import com.dt180g.laboration_3.support.HanoiLogger;
+import com.dt180g.laboration_3.support.JournalFormat;
+import com.dt180g.laboration_3.support.JournalRecord;
+import com.dt180g.laboration_3.support.JournalScanner;
+import com.dt180g.laboration_3.support.PackedMoves;
+import com.dt180g.laboration_3.support.RecordSource;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.stream.LongStream;
 
 /**
- * Reads a saved log and replays the game.
+ * Reads a saved log and replays the game. Logs are read in any journal format, told apart by
+ * the first bytes of the file, see {@link JournalFormat#of(long)}.
+ *
+ * Log files are memory-mapped and parsed in bulk into journal records, a text log by a
+ * {@link JournalScanner} creating no object per entry, and restored part by part through
+ * {@link GameSession#replay(long[], int, int)}: the moves are neither journaled nor shown one by
+ * one. The journal of the session then goes on from the replayed game; appending to the log if it
+ * is the replayed one, instead of writing it over while it is read.
+ *
+ * With {@link AppConfig#getReplayPipelineDepth()} set, a {@link ReplayPipeline} reads and parses
+ * the log on a thread of its own while the game is restored. {@link #getReport()} tells how long
+ * either stage waited for the other.
  *
  * @author Muntaser Ibrahim
  */
 public class Replayer {
+    /* records replayed at once */
+    private static final int PART = 1 << 12;
+
     private final BufferedReader reader;
+    private final Path file;
+    private final GameSession session;
+    private ReplayReport report;
+
+    /**
+     * Statistics of a replay.
+     *
+     * @param records     amount of records replayed, from the header on.
+     * @param nanos       wall clock time of the replay.
+     * @param readStall   nanoseconds reading the log waited for the game to catch up.
+     * @param applyStall  nanoseconds restoring the game waited for the log to be read.
+     * @param pipelined   whether the log was read on a thread of its own.
+     */
+    public record ReplayReport(long records, long nanos, long readStall, long applyStall, boolean pipelined) {
+        /** @return throughput of the replay in records per second. */
+        public double recordsPerSecond() { return records * 1e9 / Math.max(nanos, 1); }
+    }
 
     /** Default constructor reads from the log file path. */
     public Replayer() throws IOException, URISyntaxException {
-        reader = new BufferedReader(new java.io.FileReader(AppConfig.getLogFilePath()));
+        this(Path.of(AppConfig.getLogFilePath()), GameSession.getDefault());
     }
 
-    /** Test constructor that takes any BufferedReader. */
+    /** Test constructor that takes any BufferedReader, replaying into the default game. */
     public Replayer(BufferedReader reader) {
+        this(reader, GameSession.getDefault());
+    }
+
+    /**
+     * Constructor replaying a text log into the given game session.
+     *
+     * @param reader  source of the log.
+     * @param session the session to restore the game in.
+     */
+    public Replayer(BufferedReader reader, GameSession session) {
         this.reader = reader;
+        this.file = null;
+        this.session = session;
     }
 
-    /** Runs the replay: first line is disc count, then moves or undos. */
+    /**
+     * Constructor replaying a log file of either format into the given game session.
+     *
+     * @param file    the log file.
+     * @param session the session to restore the game in.
+     */
+    public Replayer(Path file, GameSession session) {
+        this.reader = null;
+        this.file = file;
+        this.session = session;
+    }
+
+    /**
+     * Runs the replay: first entry is disc count, optionally followed by the tower count,
+     * then moves, undos or redos. Undo and redo symbols may be followed by an amount of moves.
+     * A checkpoint restores its state unless the game already is in it. The replayed game is
+     * shown once, at the end, if {@link AppConfig#shouldShowReplayMoves()}.
+     */
     public void runReplay() throws IOException {
-        String line = reader.readLine();
-        int discs = Integer.parseInt(line.trim());
-        CommandManager.INSTANCE.executeCommand(new NewGameCommand(discs));
+        if (reader != null) {
+            replay(readText(reader));
+        } else {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                replay(channel);
+            }
+        }
+        if (AppConfig.shouldShowReplayMoves()) {
+            new ShowCommand(session.getEngine()).execute();
+        }
+    }
+
+    /**
+     * Resumes the game of the log file: restores its latest checkpoint, and replays only the entries
+     * after it. A checkpoint the entries after it undo or redo past is passed over for an earlier
+     * one. An entry torn by a crash at the end of the log is left out.
+     */
+    public void resume() throws IOException {
+        if (reader != null) {
+            replay(readText(reader));
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] plan = channel.size() > Integer.MAX_VALUE ? null : plan(channel);
+            if (plan != null) replay(plan);
+            else replay(channel);
+        }
+    }
+
+    /** @return statistics of the last replay or resume, or null before the first. */
+    public ReplayReport getReport() { return report; }
+
+    /* streams every record of the log into the game */
+    private void replay(FileChannel channel) throws IOException {
+        switch (JournalFormat.of(read(channel, 0))) {
+            case BINARY -> replay(header(channel), new BinaryRecords(channel, 2 * JournalRecord.SIZE));
+            case PACKED -> {
+                if (channel.size() > Integer.MAX_VALUE) throw new IllegalArgumentException("The log is too large to replay.");
+                long header = header(channel);
+                ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                replay(header, new PackedMoves.Decoder(JournalRecord.towers(header), log.position(2 * JournalRecord.SIZE)));
+            }
+            default -> {
+                JournalScanner scanner = new JournalScanner(channel);
+                replay(scanner.getHeader(), scanner);
+            }
+        }
+    }
+
+    private void replay(long[] records) throws IOException {
+        replay(records[0], new Records(records, 1));
+    }
+
+    /* replays a game on this thread, or through a pipeline reading ahead */
+    private void replay(long header, RecordSource source) throws IOException {
+        int depth = AppConfig.getReplayPipelineDepth();
+        long start = System.nanoTime();
+        if (depth <= 0) {
+            long records = apply(header, source);
+            report = new ReplayReport(records, System.nanoTime() - start, 0, 0, false);
+            return;
+        }
+        ReplayPipeline pipeline = new ReplayPipeline(source, depth, PART);
+        long records;
+        try {
+            records = apply(header, pipeline);
+        } finally {
+            pipeline.close(); // before the log is closed under the reader
+        }
+        report = new ReplayReport(records, System.nanoTime() - start,
+                pipeline.getReaderStall(), pipeline.getApplierStall(), true);
+    }
+
+    /*
+     * replays a game in parts, without journaling it, then lets the journal of the session go on
+     * from it: appending to the log if it is the one replayed, or else starting over with the game
+     */
+    private long apply(long header, RecordSource source) throws IOException {
+        HanoiLogger journal = session.getJournal();
+        Path target = journal.getFile();
+        boolean same = file != null && target != null && Files.exists(target) && Files.isSameFile(file, target);
+        boolean copy = target != null && !same;
+        if (copy) journal.resetLogger();
+        long[] part = new long[PART];
+        part[0] = header;
+        long total = 0;
+        for (int filled = 1, read = 1; read > 0; ) {
+            read = source.next(part, filled, part.length - filled);
+            filled += read;
+            int replayed = session.replay(part, 0, filled);
+            if (copy) journal.logRecords(part, 0, replayed);
+            System.arraycopy(part, replayed, part, 0, filled - replayed);
+            filled -= replayed;
+            total += replayed;
+        }
+        if (same) journal.append();
+        return total;
+    }
+
+    /* the header, and the records from the latest usable checkpoint on; or null to replay them all */
+    private static long[] plan(FileChannel channel) throws IOException {
+        JournalFormat format = JournalFormat.of(read(channel, 0));
+        long header = format == JournalFormat.TEXT ? new JournalScanner(channel).getHeader() : header(channel);
+        ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        return new TailPlan(channel, log, format, header).plan();
+    }
+
+    /* the 8 bytes of the log at a position, or 0 if it ends before */
+    static long read(FileChannel channel, long position) throws IOException {
+        ByteBuffer word = ByteBuffer.allocate(JournalRecord.SIZE);
+        while (word.hasRemaining() && channel.read(word, position + word.position()) > 0) { }
+        return word.hasRemaining() ? 0 : word.getLong(0);
+    }
+
+    /* the header record of a binary or packed log, following its magic */
+    static long header(FileChannel channel) throws IOException {
+        if (channel.size() < 2 * JournalRecord.SIZE) throw new IllegalArgumentException("The log holds no game.");
+        return read(channel, JournalRecord.SIZE);
+    }
 
-        while ((line = reader.readLine()) != null) {
-            if (line.equals(AppConfig.LOG_UNDO_SYMBOL)) {
-                CommandManager.INSTANCE.undoMove();
+    private static long[] readText(BufferedReader text) throws IOException {
+        String first = text.readLine();
+        if (first == null) throw new IllegalArgumentException("The log holds no game.");
+        LongStream.Builder records = LongStream.builder().add(JournalRecord.parseHeader(first));
+        for (String line; (line = text.readLine()) != null; ) {
+            String entry = line.trim();
+            if (entry.isBlank()) continue;
+            if (entry.startsWith(AppConfig.LOG_CHECKPOINT_SYMBOL)) {
+                long[] words = JournalRecord.parseCheckpoint(entry);
+                if (words != null) for (long word : words) records.add(word);
             } else {
-                String[] parts = line.split(" ");
-                int src = Integer.parseInt(parts[0]);
-                int dst = Integer.parseInt(parts[1]);
-                CommandManager.INSTANCE.executeCommand(new MoveCommand(src, dst));
+                records.add(JournalRecord.parseEntry(entry));
+            }
+        }
+        return records.build().toArray();
+    }
+
+    /*
+     * Plans a resume from the end of a log: searches it backwards for checkpoints, reading the
+     * records after each one found only up to the one found before it. Whether the records after a
+     * checkpoint never undo or redo past the moves made after it is summed up over all of them,
+     * updated backwards, so that every record of the tail is read and checked once.
+     */
+    private static final class TailPlan {
+        private final FileChannel channel;
+        private final ByteBuffer log;
+        private final JournalFormat format;
+        private final long header;
+        private final int towers;
+        /*
+         * The summary: the records read replay from a history cursor c of size s if ok, c + low >= 0
+         * and high <= s - c, where low is the lowest cursor relative to c, and high the highest
+         * before the first move.
+         */
+        private boolean ok = true;
+        private long low = 0, high = 0;
+
+        TailPlan(FileChannel channel, ByteBuffer log, JournalFormat format, long header) {
+            this.channel = channel;
+            this.log = log;
+            this.format = format;
+            this.header = header;
+            this.towers = JournalRecord.towers(header);
+        }
+
+        long[] plan() throws IOException {
+            Deque<long[]> segments = new ArrayDeque<>();
+            int length = 1;
+            for (long end = Long.MAX_VALUE, start; (start = previous(end)) >= 0; end = start) {
+                long[] segment = read(start, end);
+                segments.addFirst(segment);
+                length += segment.length;
+                prepend(segment);
+                if (ok && low == 0 && high == 0) {
+                    long[] plan = new long[length];
+                    plan[0] = header;
+                    int n = 1;
+                    for (long[] records : segments) {
+                        System.arraycopy(records, 0, plan, n, records.length);
+                        n += records.length;
+                    }
+                    return plan;
+                }
             }
-            if (AppConfig.shouldShowReplayMoves()) {
-                new ShowCommand().execute();
+            return null;
+        }
+
+        /* position of the latest whole checkpoint starting before a position, or -1 if none */
+        private long previous(long before) throws IOException {
+            switch (format) {
+                case BINARY -> {
+                    long limit = Math.min(before, log.limit()) - 2 * JournalRecord.SIZE;
+                    for (long at = 2 * JournalRecord.SIZE + (limit / JournalRecord.SIZE - 1) * JournalRecord.SIZE;
+                         at > 2 * JournalRecord.SIZE; at -= JournalRecord.SIZE) {
+                        long word = log.getLong((int) at);
+                        if (JournalRecord.type(word) != JournalRecord.CHECKPOINT_END) continue;
+                        long start = at - ((word >>> 32 & 0xFFFFFFF) + 1) * JournalRecord.SIZE;
+                        if (start >= 2 * JournalRecord.SIZE && isCheckpoint(start)) return start;
+                    }
+                }
+                case PACKED -> {
+                    // a checkpoint starts with an escape, an undo of bit length zero and its amount of words
+                    int width = PackedMoves.width(towers), length = width + 14;
+                    long marker = (long) ((1 << width) - 1) << 14 | towers + 2;
+                    for (long at = Math.min(before - 1, (long) log.limit() * 8 - length); at >= 16L * 8; at--)
+                        if (bits(at, length) == marker && isCheckpoint(at)) return at;
+                }
+                default -> {
+                    int headerEnd = 0;
+                    while (log.get(headerEnd) != '\n') headerEnd++;
+                    for (long at = Math.min(before, log.limit()) - 1; at > headerEnd; at--)
+                        if (log.get((int) at) == AppConfig.LOG_CHECKPOINT_SYMBOL.charAt(0)
+                                && log.get((int) at - 1) == '\n' && isCheckpoint(at)) return at;
+                }
+            }
+            return -1;
+        }
+
+        /* whether a whole checkpoint starts at a position, passing its checksum */
+        private boolean isCheckpoint(long position) throws IOException {
+            RecordSource source = open(position);
+            long[] words = new long[towers + 4];
+            int n = 0;
+            for (int read; n < words.length && (read = source.next(words, n, words.length - n)) > 0; ) n += read;
+            if (!JournalRecord.isCheckpoint(words, 0, n)) return false;
+            if (format != JournalFormat.TEXT) return true;
+            // a text checkpoint failing its checksum is skipped, and another one parsed after it
+            long end = position;
+            while (end < log.limit() && log.get((int) end) != '\n') end++;
+            return source.getPosition() == end + 1;
+        }
+
+        /* the records from a position up to another one, leaving out an entry torn at the end of the log */
+        private long[] read(long start, long end) throws IOException {
+            RecordSource source = open(start);
+            long[] records = new long[PART];
+            int n = 0;
+            for (int words = 0; words > 0 || source.getPosition() < end; n++) {
+                if (n == records.length) records = Arrays.copyOf(records, 2 * n);
+                if (source.next(records, n, 1) == 0) break;
+                if (words > 0) {
+                    words--;
+                    continue;
+                }
+                // lines skipped by a text log may lead past the end
+                if (source.getPosition() > end) break;
+                if (JournalRecord.type(records[n]) == JournalRecord.CHECKPOINT)
+                    words = JournalRecord.checkpointLength(records[n]) - 1;
+            }
+            return Arrays.copyOf(records, n);
+        }
+
+        private RecordSource open(long position) throws IOException {
+            return switch (format) {
+                case BINARY -> new BinaryRecords(channel, position);
+                case PACKED -> new PackedMoves.Decoder(towers,
+                        log.duplicate().position((int) (position / 8)), (int) (position % 8));
+                default -> new JournalScanner(channel, position, header);
+            };
+        }
+
+        /* the bits of the packed log from a bit position on, at most 50 */
+        private long bits(long position, int length) {
+            int first = (int) (position >>> 3), skip = (int) (position & 7), bytes = (skip + length + 7) >>> 3;
+            long value = 0;
+            for (int i = 0; i < bytes; i++) value = value << 8 | log.get(first + i) & 0xFF;
+            return value >>> (bytes * 8 - skip - length) & (1L << length) - 1;
+        }
+
+        /* adds records before the ones summed up, leaving out the words of checkpoints */
+        private void prepend(long[] records) {
+            long[] entries = new long[records.length];
+            int n = 0;
+            for (int i = 0; i < records.length; i++) {
+                if (JournalRecord.type(records[i]) == JournalRecord.CHECKPOINT)
+                    i += JournalRecord.checkpointLength(records[i]) - 1;
+                else entries[n++] = records[i];
+            }
+            while (n > 0) {
+                long record = entries[--n];
+                switch (JournalRecord.type(record)) {
+                    case JournalRecord.MOVE -> {
+                        // the move ends up at the end of the history, from which the rest has to replay
+                        ok &= high <= 0;
+                        low = Math.min(0, 1 + low);
+                        high = 0;
+                    }
+                    case JournalRecord.UNDO -> {
+                        low -= JournalRecord.amount(record);
+                        high = Math.max(0, high - JournalRecord.amount(record));
+                    }
+                    case JournalRecord.REDO -> {
+                        low = Math.min(0, JournalRecord.amount(record) + low);
+                        high += JournalRecord.amount(record);
+                    }
+                    default -> ok = false;
+                }
+            }
+        }
+    }
+
+    /* hands out the records of an array */
+    private static final class Records implements RecordSource {
+        private final long[] records;
+        private int next;
+
+        Records(long[] records, int next) {
+            this.records = records;
+            this.next = next;
+        }
+
+        @Override
+        public int next(long[] out, int offset, int length) {
+            int n = Math.min(length, records.length - next);
+            System.arraycopy(records, next, out, offset, n);
+            next += n;
+            return n;
+        }
+    }
+
+    /* reads the records of a binary log from a position on, leaving out a record cut short */
+    static final class BinaryRecords implements RecordSource {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).flip();
+        private long position;
+
+        BinaryRecords(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public long getPosition() { return position - buffer.remaining(); }
+
+        @Override
+        public int next(long[] records, int offset, int length) {
+            int n = 0;
+            while (n < length) {
+                if (buffer.remaining() >= JournalRecord.SIZE) {
+                    records[offset + n++] = buffer.getLong();
+                    continue;
+                }
+                try {
+                    int read = channel.read(buffer.compact(), position);
+                    buffer.flip();
+                    if (read <= 0) break;
+                    position += read;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read log", e);
+                }
             }
+            return n;
         }
     }
 }
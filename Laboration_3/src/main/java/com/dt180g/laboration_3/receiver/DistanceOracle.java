@@ -0,0 +1,22 @@
+package com.dt180g.laboration_3.receiver;
+
+/**
+ * A source of exact distances to the goal, used by {@link HanoiEngine} for hints in games
+ * without a closed form solution, such as games with more than three towers.
+ *
+ * @author Muntaser Ibrahim
+ */
+public interface DistanceOracle {
+    /**
+     * @param discs  amount of discs of a game.
+     * @param towers amount of towers of a game.
+     * @return whether this oracle knows the distances of such games.
+     */
+    boolean covers(int discs, int towers);
+
+    /**
+     * @param towers bitmask per tower of a configuration covered by this oracle.
+     * @return amount of moves on the shortest path to completion, or -1 if unreachable.
+     */
+    long distanceOf(long[] towers);
+}
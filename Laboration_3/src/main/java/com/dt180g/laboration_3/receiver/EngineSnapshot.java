@@ -0,0 +1,40 @@
+package com.dt180g.laboration_3.receiver;
+
+/**
+ * Immutable state of a {@link HanoiEngine} at one point in time, as read between two changes
+ * of the game. Snapshots may be read from any thread without locking the engine.
+ *
+ * The state is kept as one bitmask per tower, bit (d-1) marking disc d, like the engine does.
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class EngineSnapshot {
+    private final long[] towers;
+    private final int discs;
+    private final long moves, sequence;
+
+    EngineSnapshot(final long[] towers, final int discs, final long moves, final long sequence) {
+        this.towers = towers;
+        this.discs = discs;
+        this.moves = moves;
+        this.sequence = sequence;
+    }
+
+    /** @return whether all discs are on the last tower. */
+    public boolean isGameCompleted() {
+        return Long.bitCount(towers[towers.length-1])==discs;
+    }
+
+    /** @return copy of the bitmask per tower. */
+    public long[] getState() { return towers.clone(); }
+
+    /** @return bitmask of a single tower. */
+    public long getTowerMask(int tower) { return towers[tower]; }
+
+    public int getDiscAmount()          { return discs; }
+    public int getTowerAmount()         { return towers.length; }
+    public long getMoves()              { return moves; }
+    public int getTowerState(int tower) { return Long.bitCount(towers[tower]); }
+    /** @return amount of changes of the engine before this snapshot was read, never decreasing. */
+    public long getSequence()           { return sequence; }
+}
@@ -4,58 +4,86 @@ import com.dt180g.laboration_3.validation.InvalidMoveException;
 import com.dt180g.laboration_3.support.AppConfig;
 
 import java.io.PrintStream;
+import java.lang.invoke.VarHandle;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 /**
  * The main engine for Towers of Hanoi, receiving command requests.
+ * {@link #INSTANCE} is the engine of the default game; further engines
+ * can be created for independent game sessions.
+ *
+ * The engine itself is meant to be driven by one thread at a time. Observers on other threads read
+ * the game as an immutable {@link EngineSnapshot} through {@link #snapshot()}, built on demand
+ * without locking the writer, so that a change of the game only advances a sequence number.
  *
  * @author Erik Ström
  */
-public enum HanoiEngine {
-    INSTANCE;
+public final class HanoiEngine {
+    public static final HanoiEngine INSTANCE = new HanoiEngine();
 
-    private int discs = 0, moves = 0;
-    private final List<ArrayList<Integer>> towers;
-    private List<Integer> pillarSpacings;
+    private int discs = 0;
+    private long moves = 0;
+    /*
+     * Each tower is a bitmask where bit (d-1) is set when disc d rests on it. Disc 1 is
+     * the smallest, so the top disc of a tower is always its lowest set bit. The amount
+     * of towers is chosen per game, the first tower being the start and the last the goal.
+     */
+    private long[] towers;
+    private DistanceOracle oracle;
+    /*
+     * Sequence lock of the game: odd while the writer changes it, advanced by two per change. A
+     * reader copies the game between two reads of the same even sequence, and keeps the snapshot
+     * built for the next reader until the sequence moves.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicReference<EngineSnapshot> snapshot = new AtomicReference<>();
 
-    private interface TOWER { int T1 = 0, T2 = 1, T3 = 2; }
+    /** Creates an engine without any discs, awaiting {@link #resetGame(int, int)}. */
+    public HanoiEngine() {
+        towers = new long[AppConfig.TOWERS_AMOUNT];
+    }
 
-    HanoiEngine() {
-        towers = IntStream.range(0, AppConfig.TOWERS_AMOUNT)
-                .mapToObj(i -> new ArrayList<Integer>())
-                .toList();
+    /* marks the game as being changed; the fence keeps the changes from being seen before the mark */
+    private void beginChange() {
+        sequence.setOpaque(sequence.getPlain() + 1);
+        VarHandle.storeStoreFence();
+    }
+
+    /* marks the change as done; a release store is enough, and spares the move path a full fence */
+    private void endChange() {
+        sequence.setRelease(sequence.getPlain() + 1);
     }
 
     private void resetEngine(final int discAmount) {
-        IntStream.rangeClosed(1, discAmount)
-                .forEach(i -> towers.get(TOWER.T1).add(i));
+        // shifting by 64 is a no-op in Java, so a full tower of 64 discs is spelled out as -1
+        towers[0] = discAmount == Long.SIZE ? -1L : (1L << discAmount) - 1;
         this.discs = discAmount;
         moves = 0;
-        pillarSpacings = List.of(discs*4, discs*5, discs*5);
+    }
+
+    private int pillarSpacing(final int tower) {
+        return tower==0 ? discs*4 : discs*5;
     }
 
     private void printPillars(final PrintStream out) {
         String block = "■■";
-        Map<Integer,String> discObjs = IntStream.rangeClosed(1, AppConfig.DISC_AMOUNT_MAXIMUM)
-                .boxed()
-                .collect(Collectors.toMap(Function.identity(),
-                        i -> i==1 ? block : block.repeat(i*2-1)));
-        Map<Integer,Integer> offsets = IntStream.iterate(0, i -> i+2)
-                .limit(AppConfig.DISC_AMOUNT_MAXIMUM)
-                .boxed()
-                .collect(Collectors.toMap(i -> i/2+1, Function.identity()));
+        IntFunction<String> discObjs = i -> i==1 ? block : block.repeat(i*2-1);
+        IntUnaryOperator offsets = i -> (i-1)*2;
         String pCol = AppConfig.COLOR_PILLAR, dCol = AppConfig.COLOR_DISC;
 
         out.println();
         IntStream.rangeClosed(-1, discs-1).forEach(row -> {
             AtomicInteger usedOff = new AtomicInteger(0);
-            IntStream.range(0, AppConfig.TOWERS_AMOUNT).forEach(t -> {
-                int space = pillarSpacings.get(t);
-                int size = towers.get(t).size();
+            IntStream.range(0, towers.length).forEach(t -> {
+                int space = pillarSpacing(t);
+                int size = getTowerState(t);
                 if (row<0) {
                     out.printf("%s%s—%s", pCol, " ".repeat(space), AppConfig.COLOR_RESET);
                 } else if ((discs-row)>size) {
@@ -63,10 +91,10 @@ public enum HanoiEngine {
                     usedOff.set(0);
                 } else {
                     int idx = row-discs+size;
-                    int disc = towers.get(t).get(idx);
-                    int off = offsets.get(disc);
+                    int disc = discAt(towers[t], idx);
+                    int off = offsets.applyAsInt(disc);
                     String pad = " ".repeat(space-(usedOff.get()+off));
-                    out.printf("%s%s%s%s", dCol, pad, discObjs.get(disc), AppConfig.COLOR_RESET);
+                    out.printf("%s%s%s%s", dCol, pad, discObjs.apply(disc), AppConfig.COLOR_RESET);
                     usedOff.set(off);
                 }
             });
@@ -78,17 +106,17 @@ public enum HanoiEngine {
         String baseCol = AppConfig.COLOR_TOWER_BASE, base="—".repeat(10);
         String firstSp = " ".repeat(4*(discs-1));
         String restSp = " ".repeat(5*(discs-2)+2);
-        IntStream.range(0, AppConfig.TOWERS_AMOUNT)
+        IntStream.range(0, towers.length)
                 .forEach(i -> out.printf("%s%s%s%s",
                         baseCol, i==0?firstSp:restSp, base, AppConfig.COLOR_RESET));
         out.println();
         String infoCol = AppConfig.COLOR_TOWER_INFO;
         String movesText = "Moves: "+moves;
-        String labels = String.format("%s%sT1%s%sT2%s%sT3%s%s%s%n",
-                infoCol, " ".repeat(pillarSpacings.get(0)), " ",
-                " ".repeat(pillarSpacings.get(1)), " ",
-                " ".repeat(pillarSpacings.get(2)), " ",
-                movesText, AppConfig.COLOR_RESET);
+        String towerLabels = IntStream.range(0, towers.length)
+                .mapToObj(i -> String.format("%sT%d ", " ".repeat(pillarSpacing(i)), i+1))
+                .collect(Collectors.joining());
+        String labels = String.format("%s%s%s%s%n",
+                infoCol, towerLabels, movesText, AppConfig.COLOR_RESET);
         out.print(labels);
     }
 
@@ -101,33 +129,272 @@ public enum HanoiEngine {
     /**
      * Performs a move (and optionally adjusts move counter).
      *
-     * @param from  source tower index (1–3)
-     * @param to    dest tower index (1–3)
+     * @param from  source tower index (1–towers)
+     * @param to    dest tower index (1–towers)
      * @param inc   true to increment move count, false to decrement
      */
     public void performMove(final int from, final int to, final boolean inc) {
-        List<Integer> f = towers.get(from-1), t = towers.get(to-1);
-        if (f.isEmpty()) throw new InvalidMoveException("No disc to move!");
-        if (!t.isEmpty() && f.get(0)>t.get(0))
-            throw new InvalidMoveException("Larger discs cannot be placed on top smaller ones!");
-        if (f==t) throw new InvalidMoveException("Destination tower needs to be different from source tower!");
-        int val = f.remove(0);
-        t.add(0, val);
-        moves += inc?1:-1;
+        beginChange();
+        int result = transfer(towers, from, to);
+        if (result==MoveResult.OK) moves += inc?1:-1;
+        endChange();
+        if (result!=MoveResult.OK) throw new InvalidMoveException(MoveResult.message(result));
+    }
+
+    /**
+     * Attempts a move without throwing, incrementing the move counter if it is valid.
+     *
+     * @param from  source tower index (1–towers)
+     * @param to    dest tower index (1–towers)
+     * @return {@link MoveResult#OK}, or the code telling why the move is invalid; the game is then left untouched.
+     */
+    public int tryMove(final int from, final int to) {
+        beginChange();
+        int result = transfer(towers, from, to);
+        if (result==MoveResult.OK) moves++;
+        endChange();
+        return result;
+    }
+
+    /**
+     * Finds every valid move of the current configuration.
+     *
+     * @return bitmask where bit {@link MoveCode#of(int, int)} is set for each valid move.
+     */
+    public long legalMoves() {
+        long legal = 0;
+        for (int from = 0; from < towers.length; from++) {
+            long top = towers[from] & -towers[from];
+            if (top==0) continue;
+            for (int to = 0; to < towers.length; to++) {
+                long t = towers[to];
+                if (to!=from && (t==0 || Long.compareUnsigned(top, t & -t)<0)) legal |= 1L << (from << 3 | to);
+            }
+        }
+        return legal;
     }
 
-    /** Resets the game to a fresh state with the given disc count. */
+    /**
+     * Performs a batch of moves all-or-nothing, validating each move against the state left
+     * by the moves before it. The move counter is adjusted once, by the size of the batch.
+     *
+     * @param from  source tower index (1–towers) per move
+     * @param to    dest tower index (1–towers) per move
+     * @param inc   true to increment move count, false to decrement
+     * @throws InvalidMoveException naming the first invalid move; the game is then left untouched.
+     */
+    public void performMoves(final int[] from, final int[] to, final boolean inc) {
+        if (from.length!=to.length)
+            throw new IllegalArgumentException("Source and destination amounts differ.");
+        long[] scratch = towers.clone();
+        for (int i = 0; i < from.length; i++) {
+            int result = transfer(scratch, from[i], to[i]);
+            if (result!=MoveResult.OK)
+                throw new InvalidMoveException(String.format("Move %d of batch: %s", i+1, MoveResult.message(result)));
+        }
+        beginChange();
+        towers = scratch;
+        moves += inc?from.length:-from.length;
+        endChange();
+    }
+
+    /** Performs a batch of moves all-or-nothing, incrementing the move counter. */
+    public void performMoves(final int[] from, final int[] to) {
+        performMoves(from, to, true);
+    }
+
+    /* moves the top disc between two towers, returning a MoveResult code */
+    private static int transfer(final long[] towers, final int from, final int to) {
+        if (from<1 || from>towers.length || to<1 || to>towers.length)
+            return MoveResult.NO_SUCH_TOWER;
+        long f = towers[from-1], t = towers[to-1];
+        // isolating the lowest set bit yields the top disc, and a smaller bit means a smaller disc
+        long top = f & -f;
+        if (f==0) return MoveResult.NO_DISC;
+        if (t!=0 && Long.compareUnsigned(top, t & -t)>0) return MoveResult.LARGER_ON_SMALLER;
+        if (from==to) return MoveResult.SAME_TOWER;
+        towers[from-1] = f ^ top;
+        towers[to-1] = t | top;
+        return MoveResult.OK;
+    }
+
+    /** Resets the game to a fresh state with the given disc count, using the default tower amount. */
     public void resetGame(final int discAmount) {
-        towers.forEach(List::clear);
+        resetGame(discAmount, AppConfig.TOWERS_AMOUNT);
+    }
+
+    /**
+     * Resets the game to a fresh state with the given disc and tower count.
+     *
+     * @param discAmount  amount of discs, at most {@link AppConfig#DISC_AMOUNT_MAXIMUM}.
+     * @param towerAmount amount of towers, within the tower bounds of {@link AppConfig}.
+     */
+    public void resetGame(final int discAmount, final int towerAmount) {
+        if (discAmount<0 || discAmount>AppConfig.DISC_AMOUNT_MAXIMUM)
+            throw new IllegalArgumentException("Invalid disc amount: " + discAmount);
+        if (towerAmount<AppConfig.TOWERS_AMOUNT_MINIMUM || towerAmount>AppConfig.TOWERS_AMOUNT_MAXIMUM)
+            throw new IllegalArgumentException("Invalid tower amount: " + towerAmount);
+        beginChange();
+        if (towers.length==towerAmount) Arrays.fill(towers, 0L);
+        else towers = new long[towerAmount];
         resetEngine(discAmount);
+        endChange();
     }
 
-    /** @return whether all discs are on the third tower. */
+    /**
+     * Loads an arbitrary legal configuration, replacing the current game.
+     *
+     * @param state     bitmask per tower, where bit (d-1) marks disc d. The amount of masks
+     *                  sets the amount of towers, and the discs need to be exactly 1..n.
+     * @param moveCount move counter of the loaded game.
+     */
+    public void loadState(final long[] state, final long moveCount) {
+        if (state.length<AppConfig.TOWERS_AMOUNT_MINIMUM || state.length>AppConfig.TOWERS_AMOUNT_MAXIMUM)
+            throw new IllegalArgumentException("Invalid tower amount: " + state.length);
+        long all = 0;
+        for (long tower : state) {
+            if ((all & tower) != 0) throw new IllegalArgumentException("Disc placed on several towers.");
+            all |= tower;
+        }
+        // the discs need to be a contiguous run from disc 1, i.e. all+1 is zero or a power of two
+        if ((all & (all + 1)) != 0) throw new IllegalArgumentException("Discs need to be numbered 1..n.");
+        long[] loaded = state.clone();
+        beginChange();
+        towers = loaded;
+        discs = Long.bitCount(all);
+        moves = moveCount;
+        endChange();
+    }
+
+    /** @return whether all discs are on the last tower. */
     public boolean isGameCompleted() {
-        return towers.get(TOWER.T3).size()==discs;
+        return getTowerState(towers.length-1)==discs;
+    }
+
+    /**
+     * Finds the disc at the given position of a tower, counted from the top.
+     *
+     * @param tower bitmask of the tower.
+     * @param index zero-based position from the top of the tower.
+     * @return the disc number (1 being the smallest).
+     */
+    private static int discAt(long tower, final int index) {
+        for (int i = 0; i < index; i++) tower &= tower - 1;
+        return Long.numberOfTrailingZeros(tower) + 1;
+    }
+
+    /**
+     * Walks the discs from the largest down, tracking the tower each disc needs to reach.
+     * A disc already on its target lets the smaller discs follow it there; a misplaced disc
+     * costs 2^(d-1) moves, and sends the smaller discs to the third tower first. The last
+     * misplaced disc is free to move, which makes it the first move of the shortest path.
+     *
+     * @param wantMove true to return the first move, false to return the distance.
+     * @return the packed first move, or the (unsigned) distance to completion.
+     */
+    private long hint(final boolean wantMove) {
+        if (oracle != null && oracle.covers(discs, towers.length)) return oracleHint(wantMove);
+        if (towers.length != 3)
+            throw new UnsupportedOperationException("Hints are only available for games with three towers.");
+        long distance = 0;
+        int target = 2, move = -1;
+        for (int disc = discs; disc >= 1; disc--) {
+            long bit = 1L << (disc-1);
+            int pos = (towers[0] & bit) != 0 ? 0 : (towers[1] & bit) != 0 ? 1 : 2;
+            if (pos != target) {
+                distance += bit;
+                move = MoveCode.of(pos+1, target+1);
+                target = 3 - pos - target;
+            }
+        }
+        return wantMove ? move : distance;
+    }
+
+    /* picks the legal move leading to a configuration one step closer, according to the oracle */
+    private long oracleHint(final boolean wantMove) {
+        long distance = oracle.distanceOf(towers);
+        if (!wantMove || distance <= 0) return wantMove ? -1 : distance;
+        long[] next = towers.clone();
+        for (int from = 0; from < towers.length; from++) {
+            long top = towers[from] & -towers[from];
+            if (top == 0) continue;
+            for (int to = 0; to < towers.length; to++) {
+                long t = towers[to];
+                if (to == from || (t != 0 && Long.compareUnsigned(top, t & -t) > 0)) continue;
+                next[from] = towers[from] ^ top;
+                next[to] = t | top;
+                boolean closer = oracle.distanceOf(next) == distance - 1;
+                next[from] = towers[from];
+                next[to] = t;
+                if (closer) return MoveCode.of(from + 1, to + 1);
+            }
+        }
+        return -1;
     }
 
+    /**
+     * Computes the amount of moves left on the shortest path to completion, from any legal
+     * configuration. Three tower games take O(n) time without searching the state space;
+     * other games need a {@link DistanceOracle} covering them.
+     *
+     * @return the (unsigned) distance to a completed game.
+     * @throws UnsupportedOperationException for games no hints are available for.
+     */
+    public long distanceToGoal() { return hint(false); }
+
+    /**
+     * Computes the first move of the shortest path to completion, in O(n) time for three
+     * tower games, or with a {@link DistanceOracle} covering the game.
+     *
+     * @return the packed {@link MoveCode}, or -1 if the game is already completed.
+     * @throws UnsupportedOperationException for games no hints are available for.
+     */
+    public int nextBestMove() { return (int) hint(true); }
+
+    /** @return whether hints are available for the current game. */
+    public boolean hasHints() {
+        return towers.length == 3 || (oracle != null && oracle.covers(discs, towers.length));
+    }
+
+    /**
+     * Attaches exact distances for hints, used whenever the oracle covers the game.
+     *
+     * @param oracle source of distances, or null to only use the closed form of three tower games.
+     */
+    public void setDistanceOracle(final DistanceOracle oracle) { this.oracle = oracle; }
+
+    /**
+     * Reads the game as of its last finished change. Safe to call from any thread.
+     *
+     * @return immutable snapshot of the game, consistent as a whole.
+     */
+    public EngineSnapshot snapshot() {
+        while (true) {
+            long seq = sequence.getAcquire();
+            EngineSnapshot last = snapshot.getAcquire();
+            // while a change is under way, the snapshot of the one before still is the latest
+            if (last != null && last.getSequence() == seq / 2) return last;
+            if ((seq & 1) == 0) {
+                long[] state = towers.clone();
+                int discAmount = discs;
+                long moveCount = moves;
+                VarHandle.loadLoadFence();
+                if (sequence.getOpaque() == seq) {
+                    EngineSnapshot built = new EngineSnapshot(state, discAmount, moveCount, seq / 2);
+                    snapshot.accumulateAndGet(built, (kept, next) ->
+                            kept == null || kept.getSequence() < next.getSequence() ? next : kept);
+                    return built;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /** @return copy of the bitmask per tower, as accepted by {@link #loadState(long[], long)}. */
+    public long[] getState() { return towers.clone(); }
+
     public int getDiscAmount() { return discs; }
-    public int getMoves()      { return moves; }
-    public int getTowerState(int tower) { return towers.get(tower).size(); }
+    public int getTowerAmount() { return towers.length; }
+    public long getMoves()     { return moves; }
+    public int getTowerState(int tower) { return Long.bitCount(towers[tower]); }
 }
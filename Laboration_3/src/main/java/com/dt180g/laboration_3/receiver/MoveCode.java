@@ -0,0 +1,28 @@
+package com.dt180g.laboration_3.receiver;
+
+/**
+ * Utility class for packing a move into a primitive code. A code holds the zero-based
+ * source tower in bits 3-5 and the zero-based destination tower in bits 0-2, so every
+ * move between at most eight towers fits in the range [0, 64).
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class MoveCode {
+    private MoveCode() { throw new IllegalStateException("Utility class"); }
+
+    /**
+     * @param from source tower (1-based).
+     * @param to   destination tower (1-based).
+     * @return the packed move code.
+     */
+    public static int of(final int from, final int to) { return (from-1) << 3 | (to-1); }
+
+    /** @return source tower (1-based) of a packed move code. */
+    public static int from(final int code) { return (code >>> 3) + 1; }
+
+    /** @return destination tower (1-based) of a packed move code. */
+    public static int to(final int code) { return (code & 7) + 1; }
+
+    /** @return the packed code of the move undoing the given one. */
+    public static int reverse(final int code) { return (code & 7) << 3 | code >>> 3; }
+}
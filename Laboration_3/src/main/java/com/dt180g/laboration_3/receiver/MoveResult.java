@@ -0,0 +1,31 @@
+package com.dt180g.laboration_3.receiver;
+
+/**
+ * Utility class of the primitive result codes of {@link HanoiEngine#tryMove(int, int)}. Invalid
+ * moves are reported by code alone; the message text is only looked up where it is shown.
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class MoveResult {
+    private MoveResult() { throw new IllegalStateException("Utility class"); }
+
+    public static final int OK = 0;
+    public static final int NO_SUCH_TOWER = 1;
+    public static final int NO_DISC = 2;
+    public static final int LARGER_ON_SMALLER = 3;
+    public static final int SAME_TOWER = 4;
+
+    private static final String[] MESSAGES = {
+            "",
+            "No such tower exists!",
+            "No disc to move!",
+            "Larger discs cannot be placed on top smaller ones!",
+            "Destination tower needs to be different from source tower!"
+    };
+
+    /**
+     * @param result a result code.
+     * @return the message describing why a move was invalid, or an empty string for {@link #OK}.
+     */
+    public static String message(final int result) { return MESSAGES[result]; }
+}
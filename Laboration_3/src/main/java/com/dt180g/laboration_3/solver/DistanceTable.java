@@ -0,0 +1,133 @@
+package com.dt180g.laboration_3.solver;
+
+import com.dt180g.laboration_3.receiver.DistanceOracle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped table of exact distances to the goal, one unsigned 16-bit entry per
+ * configuration, as produced by {@link StateSpaceExplorer}. A configuration is indexed by
+ * its base-k encoding, where digit d-1 holds the (zero-based) tower of disc d.
+ *
+ * Entries hold the distance plus one, so that zero marks a configuration not yet reached.
+ * The table lives off-heap in the file, split into mappings of at most 1 GiB each.
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class DistanceTable implements DistanceOracle {
+    static final int MAGIC = 0x48445354; // "HDST"
+    static final int HEADER_SIZE = 16;
+    static final int SEGMENT_BITS = 29;
+    static final int UNREACHED = 0, MAX_DISTANCE = 0xFFFE;
+
+    private final int discs, towers;
+    private final long states;
+    private final long[] powers;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] segments;
+
+    private DistanceTable(final FileChannel channel, final FileChannel.MapMode mode,
+                          final int discs, final int towers) throws IOException {
+        this.discs = discs;
+        this.towers = towers;
+        this.powers = new long[discs + 1];
+        powers[0] = 1;
+        for (int i = 1; i <= discs; i++) powers[i] = powers[i - 1] * towers;
+        this.states = powers[discs];
+
+        header = channel.map(mode, 0, HEADER_SIZE);
+        long segmentSize = 1L << SEGMENT_BITS;
+        segments = new MappedByteBuffer[(int) ((states + segmentSize - 1) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; i++) {
+            long first = (long) i << SEGMENT_BITS;
+            long entries = Math.min(segmentSize, states - first);
+            segments[i] = channel.map(mode, HEADER_SIZE + 2 * first, 2 * entries);
+        }
+    }
+
+    /** Creates a new, empty table in the given file for {@link StateSpaceExplorer}. */
+    static DistanceTable create(final Path file, final int discs, final int towers) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DistanceTable table = new DistanceTable(channel, FileChannel.MapMode.READ_WRITE, discs, towers);
+            table.header.putInt(0, MAGIC).put(4, (byte) discs).put(5, (byte) towers);
+            return table;
+        }
+    }
+
+    /**
+     * Opens a table written by an earlier exploration.
+     *
+     * @param file the table file.
+     * @return the read-only table.
+     * @throws IOException if the file cannot be read or is no distance table.
+     */
+    public static DistanceTable open(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(head, 0);
+            if (head.getInt(0) != MAGIC) throw new IOException("Not a distance table: " + file);
+            return new DistanceTable(channel, FileChannel.MapMode.READ_ONLY, head.get(4), head.get(5));
+        }
+    }
+
+    /** Records the largest distance once exploration is done and forces the table to disk. */
+    void complete(final int maxDistance) {
+        header.putInt(8, maxDistance);
+        header.force();
+        for (MappedByteBuffer segment : segments) segment.force();
+    }
+
+    int entry(final long state) {
+        return segments[(int) (state >>> SEGMENT_BITS)].getChar((int) (state & ((1L << SEGMENT_BITS) - 1)) << 1);
+    }
+
+    void setEntry(final long state, final int value) {
+        segments[(int) (state >>> SEGMENT_BITS)].putChar((int) (state & ((1L << SEGMENT_BITS) - 1)) << 1, (char) value);
+    }
+
+    /**
+     * @param towers bitmask per tower of a configuration of this table.
+     * @return the base-k encoding of the configuration.
+     */
+    public long encode(final long[] towers) {
+        long state = 0;
+        for (int t = 1; t < towers.length; t++) {
+            for (long rest = towers[t]; rest != 0; rest &= rest - 1) {
+                state += t * powers[Long.numberOfTrailingZeros(rest)];
+            }
+        }
+        return state;
+    }
+
+    /**
+     * @param state base-k encoded configuration.
+     * @return amount of moves on the shortest path to completion, or -1 if unreachable.
+     */
+    public long distance(final long state) {
+        return entry(state) - 1;
+    }
+
+    @Override
+    public boolean covers(final int discs, final int towers) {
+        return discs == this.discs && towers == this.towers;
+    }
+
+    @Override
+    public long distanceOf(final long[] towers) {
+        return distance(encode(towers));
+    }
+
+    public int getDiscAmount()    { return discs; }
+    public int getTowerAmount()   { return towers; }
+    public long getStateAmount()  { return states; }
+    /** @return the largest distance of any configuration. */
+    public int getMaxDistance()   { return header.getInt(8); }
+
+    long power(final int disc) { return powers[disc]; }
+}
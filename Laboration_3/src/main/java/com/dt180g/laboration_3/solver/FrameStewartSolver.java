@@ -0,0 +1,143 @@
+package com.dt180g.laboration_3.solver;
+
+import com.dt180g.laboration_3.receiver.MoveCode;
+import com.dt180g.laboration_3.support.AppConfig;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Frame–Stewart solver for games with three or more towers, moving all discs from the
+ * first to the last tower. For k towers, the top m discs are parked on a spare tower
+ * using all k towers, the remaining n-m discs are moved using the k-1 other towers, and
+ * the m discs are brought back on top. The best split m per disc and tower amount is
+ * taken from a dynamic programming table computed once and shared by all solvers.
+ *
+ * The moves are produced lazily as packed {@link MoveCode}s from an explicit recursion
+ * stack, whose depth is bounded by the disc and tower amount.
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class FrameStewartSolver {
+    private final int discs, towers;
+
+    /** Shared, immutable memo of optimal move counts and splits, built on first use. */
+    private static final class Table {
+        /* cost[n][k] is the (unsigned) amount of moves for n discs on k towers; split[n][k] the discs parked */
+        static final long[][] COST = new long[AppConfig.DISC_AMOUNT_MAXIMUM + 1][AppConfig.TOWERS_AMOUNT_MAXIMUM + 1];
+        static final int[][] SPLIT = new int[AppConfig.DISC_AMOUNT_MAXIMUM + 1][AppConfig.TOWERS_AMOUNT_MAXIMUM + 1];
+
+        static {
+            for (int n = 1; n <= AppConfig.DISC_AMOUNT_MAXIMUM; n++) {
+                COST[n][3] = n == Long.SIZE ? -1L : (1L << n) - 1;
+                SPLIT[n][3] = n - 1;
+                for (int k = 4; k <= AppConfig.TOWERS_AMOUNT_MAXIMUM; k++) {
+                    COST[n][k] = n == 1 ? 1 : -1L;
+                    for (int m = 1; m < n; m++) {
+                        long cost = 2 * COST[m][k] + COST[n - m][k - 1];
+                        if (Long.compareUnsigned(cost, COST[n][k]) < 0) {
+                            COST[n][k] = cost;
+                            SPLIT[n][k] = m;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param discs  amount of discs, between 1 and {@link AppConfig#DISC_AMOUNT_MAXIMUM}.
+     * @param towers amount of towers, within the tower bounds of {@link AppConfig}.
+     */
+    public FrameStewartSolver(final int discs, final int towers) {
+        if (discs < 1 || discs > AppConfig.DISC_AMOUNT_MAXIMUM)
+            throw new IllegalArgumentException("Invalid disc amount: " + discs);
+        if (towers < AppConfig.TOWERS_AMOUNT_MINIMUM || towers > AppConfig.TOWERS_AMOUNT_MAXIMUM)
+            throw new IllegalArgumentException("Invalid tower amount: " + towers);
+        this.discs = discs;
+        this.towers = towers;
+    }
+
+    /**
+     * @param discs  amount of discs.
+     * @param towers amount of towers.
+     * @return the (unsigned) amount of moves of the Frame–Stewart solution.
+     */
+    public static long moveAmount(final int discs, final int towers) {
+        return Table.COST[discs][towers];
+    }
+
+    public int getDiscAmount()  { return discs; }
+    public int getTowerAmount() { return towers; }
+
+    /** @return the (unsigned) amount of moves of this solution. */
+    public long getMoveAmount() { return moveAmount(discs, towers); }
+
+    /** @return a lazy iterator over the moves of the solution. */
+    public PrimitiveIterator.OfInt iterator() { return new Moves(); }
+
+    /** @return the solution as a lazy stream of packed move codes. */
+    public IntStream moves() {
+        long size = getMoveAmount();
+        Spliterator.OfInt spliterator = size < 0
+                ? Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL)
+                : Spliterators.spliterator(iterator(), size, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.intStream(spliterator, false);
+    }
+
+    /**
+     * Iterative form of the recursion. Each frame moves a run of discs from one tower to
+     * another using a set of towers, and steps through parking the top discs, moving the
+     * rest, and bringing the top discs back.
+     */
+    private final class Moves implements PrimitiveIterator.OfInt {
+        /* every nested frame has fewer discs or fewer towers than its parent */
+        private final int[] amount, from, to, usable, spare, phase;
+        private int depth = 0;
+        private long remaining = getMoveAmount();
+
+        Moves() {
+            int size = discs + towers;
+            amount = new int[size]; from = new int[size]; to = new int[size];
+            usable = new int[size]; spare = new int[size]; phase = new int[size];
+            push(discs, 0, towers - 1, (1 << towers) - 1);
+        }
+
+        private void push(final int n, final int src, final int dst, final int mask) {
+            amount[depth] = n; from[depth] = src; to[depth] = dst;
+            usable[depth] = mask; phase[depth] = 0;
+            depth++;
+        }
+
+        @Override
+        public boolean hasNext() { return remaining != 0; }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) throw new NoSuchElementException();
+            while (true) {
+                int f = depth - 1, n = amount[f];
+                if (n == 1) {
+                    depth--;
+                    remaining--;
+                    return MoveCode.of(from[f] + 1, to[f] + 1);
+                }
+                int m = Table.SPLIT[n][Integer.bitCount(usable[f])];
+                switch (phase[f]++) {
+                    case 0 -> {
+                        int others = usable[f] & ~(1 << from[f]) & ~(1 << to[f]);
+                        spare[f] = Integer.numberOfTrailingZeros(others);
+                        push(m, from[f], spare[f], usable[f]);
+                    }
+                    case 1 -> push(n - m, from[f], to[f], usable[f] & ~(1 << spare[f]));
+                    case 2 -> push(m, spare[f], to[f], usable[f]);
+                    default -> depth--;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.dt180g.laboration_3.solver;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Resumable cursor over the moves of an {@link OptimalSolver}. The whole state of the
+ * cursor is its position, so a solve can be paused at any point, checkpointed by storing
+ * {@link #getPosition()}, and continued later through {@link OptimalSolver#cursor(long)}.
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class MoveCursor implements PrimitiveIterator.OfInt {
+    private final OptimalSolver solver;
+    private final long end;
+    private long position;
+
+    MoveCursor(final OptimalSolver solver, final long position, final long end) {
+        this.solver = solver;
+        this.position = position;
+        this.end = end;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return Long.compareUnsigned(position, end) < 0;
+    }
+
+    /** @return the packed code of the next move. */
+    @Override
+    public int nextInt() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return solver.codeAt(position++);
+    }
+
+    /** @return zero-based (unsigned) index of the next move to produce. */
+    public long getPosition() { return position; }
+
+    public int getDiscAmount() { return solver.getDiscAmount(); }
+}
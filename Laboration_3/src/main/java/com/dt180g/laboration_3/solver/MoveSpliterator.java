@@ -0,0 +1,60 @@
+package com.dt180g.laboration_3.solver;
+
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Spliterator over a range of moves of an {@link OptimalSolver}. Since every move is a
+ * function of its index, a range splits in halves without any shared state.
+ *
+ * @author Muntaser Ibrahim
+ */
+final class MoveSpliterator implements Spliterator.OfInt {
+    private final OptimalSolver solver;
+    private final long end;
+    private long position;
+
+    MoveSpliterator(final OptimalSolver solver, final long position, final long end) {
+        this.solver = solver;
+        this.position = position;
+        this.end = end;
+    }
+
+    @Override
+    public OfInt trySplit() {
+        long remaining = end - position;
+        if (Long.compareUnsigned(remaining, 2) < 0) return null;
+        long mid = position + (remaining >>> 1);
+        MoveSpliterator prefix = new MoveSpliterator(solver, position, mid);
+        position = mid;
+        return prefix;
+    }
+
+    @Override
+    public boolean tryAdvance(final IntConsumer action) {
+        if (Long.compareUnsigned(position, end) >= 0) return false;
+        action.accept(solver.codeAt(position++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(final IntConsumer action) {
+        for (long i = position; Long.compareUnsigned(i, end) < 0; i++) {
+            action.accept(solver.codeAt(i));
+        }
+        position = end;
+    }
+
+    /** @return remaining moves, saturated at {@link Long#MAX_VALUE} for the unsigned ranges of huge solves. */
+    @Override
+    public long estimateSize() {
+        long remaining = end - position;
+        return remaining < 0 ? Long.MAX_VALUE : remaining;
+    }
+
+    @Override
+    public int characteristics() {
+        int sized = end - position < 0 ? 0 : SIZED | SUBSIZED;
+        return ORDERED | IMMUTABLE | NONNULL | sized;
+    }
+}
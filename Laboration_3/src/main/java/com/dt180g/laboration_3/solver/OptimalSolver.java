@@ -0,0 +1,141 @@
+package com.dt180g.laboration_3.solver;
+
+import com.dt180g.laboration_3.receiver.HanoiEngine;
+import com.dt180g.laboration_3.receiver.MoveCode;
+import com.dt180g.laboration_3.support.AppConfig;
+
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterative optimal solver for the classic three tower game, moving all discs from the
+ * first to the last tower. Moves are produced as packed {@link MoveCode}s, computed from
+ * nothing but their index, which keeps memory constant and avoids any allocation per move.
+ * The same structure gives random access to any move and to the state after any move.
+ *
+ * Move counts and indices are unsigned, since a 64 disc solution has 2^64-1 moves.
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class OptimalSolver {
+    private final int discs;
+    /* packed codes indexed by from*3+to on pegs 0..2, already mapped to towers for this disc amount */
+    private final int[] codes = new int[9];
+
+    /**
+     * @param discs amount of discs, between 1 and {@link AppConfig#DISC_AMOUNT_MAXIMUM}.
+     */
+    public OptimalSolver(final int discs) {
+        if (discs < 1 || discs > AppConfig.DISC_AMOUNT_MAXIMUM)
+            throw new IllegalArgumentException("Invalid disc amount: " + discs);
+        this.discs = discs;
+        for (int from = 0; from < 3; from++) {
+            for (int to = 0; to < 3; to++) {
+                codes[from*3+to] = MoveCode.of(toTower(from), toTower(to));
+            }
+        }
+    }
+
+    /*
+     * The move formula below carries a tower to peg 2 when the disc amount is odd and to
+     * peg 1 when it is even, so for even amounts the two are swapped to always end on T3.
+     */
+    private int toTower(final int peg) {
+        return ((discs & 1) == 1 ? peg : (3 - peg) % 3) + 1;
+    }
+
+    /**
+     * Computes a move of the solution directly from its index, in constant time.
+     *
+     * @param index zero-based (unsigned) index of the move.
+     * @return the packed move code.
+     */
+    public int moveAt(final long index) {
+        if (Long.compareUnsigned(index, getMoveAmount()) >= 0)
+            throw new IndexOutOfBoundsException("Move index beyond end of solution: " + Long.toUnsignedString(index));
+        return codeAt(index);
+    }
+
+    /* unchecked version of moveAt, for the cursors which keep within bounds themselves */
+    int codeAt(final long index) {
+        long m = index + 1;
+        // disc d=ntz(m)+1 moves from peg (m & m-1) mod 3, odd discs stepping two pegs forward and even discs one
+        long rest = m & (m - 1);
+        int from = (int) (rest >= 0 ? rest % 3 : Long.remainderUnsigned(rest, 3));
+        int to = (from + ((Long.numberOfTrailingZeros(m) & 1) == 0 ? 2 : 1)) % 3;
+        return codes[from*3+to];
+    }
+
+    /**
+     * Computes the tower configuration after the given amount of moves, in O(n) time.
+     * Disc n is still on the source after k moves when k &lt; 2^(n-1), and on the
+     * destination otherwise; either way the remaining discs form a smaller solution
+     * between the two other towers, which is followed down to the smallest disc.
+     *
+     * @param moves amount of (unsigned) moves made, at most {@link #getMoveAmount()}.
+     * @return bitmask per tower, as used by {@link HanoiEngine#loadState(long[], long)}.
+     */
+    public long[] stateAt(long moves) {
+        if (Long.compareUnsigned(moves, getMoveAmount()) > 0)
+            throw new IndexOutOfBoundsException("Move amount beyond end of solution: " + Long.toUnsignedString(moves));
+        long[] towers = new long[3];
+        int src = 0, aux = 1, dst = 2;
+        for (int disc = discs; disc >= 1; disc--) {
+            long half = 1L << (disc - 1);
+            if (Long.compareUnsigned(moves, half) < 0) {
+                towers[src] |= half;
+                int tmp = aux; aux = dst; dst = tmp;
+            } else {
+                towers[dst] |= half;
+                moves -= half;
+                int tmp = aux; aux = src; src = tmp;
+            }
+        }
+        return towers;
+    }
+
+    /**
+     * Puts an engine directly into the state after the given amount of optimal moves,
+     * without replaying any of them.
+     *
+     * @param engine the engine to load.
+     * @param moves  amount of (unsigned) moves made, at most {@link #getMoveAmount()}.
+     */
+    public void loadInto(final HanoiEngine engine, final long moves) {
+        engine.loadState(stateAt(moves), moves);
+    }
+
+    public int getDiscAmount() { return discs; }
+
+    /** @return amount of moves in the solution, 2^n-1, as an unsigned value. */
+    public long getMoveAmount() {
+        return discs == Long.SIZE ? -1L : (1L << discs) - 1;
+    }
+
+    /** @return a cursor over the whole solution. */
+    public MoveCursor cursor() { return cursor(0); }
+
+    /**
+     * Creates a cursor starting at the given move, used to continue a paused solve.
+     *
+     * @param position zero-based (unsigned) index of the first move to produce,
+     *                 typically a previous {@link MoveCursor#getPosition()}.
+     * @return a cursor over the remaining moves.
+     */
+    public MoveCursor cursor(final long position) {
+        if (Long.compareUnsigned(position, getMoveAmount()) > 0)
+            throw new IllegalArgumentException("Position beyond end of solution: " + Long.toUnsignedString(position));
+        return new MoveCursor(this, position, getMoveAmount());
+    }
+
+    /** @return a splittable source of the whole solution. */
+    public Spliterator.OfInt spliterator() {
+        return new MoveSpliterator(this, 0, getMoveAmount());
+    }
+
+    /** @return the solution as a stream of packed move codes. */
+    public IntStream moves() {
+        return StreamSupport.intStream(spliterator(), false);
+    }
+}
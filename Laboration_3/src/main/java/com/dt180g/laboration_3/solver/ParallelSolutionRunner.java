@@ -0,0 +1,181 @@
+package com.dt180g.laboration_3.solver;
+
+import com.dt180g.laboration_3.receiver.HanoiEngine;
+import com.dt180g.laboration_3.receiver.MoveCode;
+import com.dt180g.laboration_3.receiver.MoveResult;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Generates or verifies a whole {@link OptimalSolver} solution on a {@link ForkJoinPool}.
+ * The move range is split into fixed size chunks which are processed independently, as
+ * every move and every intermediate state follows directly from its index.
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class ParallelSolutionRunner {
+    public static final long DEFAULT_CHUNK_SIZE = 1L << 22;
+
+    private final OptimalSolver solver;
+    private final ForkJoinPool pool;
+    private final long chunkSize;
+    private final int chunkAmount;
+
+    /**
+     * Receiver of generated moves. Chunks arrive concurrently and in any order, and the
+     * move array is only valid during the call.
+     */
+    @FunctionalInterface
+    public interface ChunkSink {
+        /**
+         * @param start  index of the first move of the chunk.
+         * @param moves  packed move codes of the chunk.
+         * @param length amount of moves in the chunk.
+         */
+        void accept(long start, int[] moves, int length);
+    }
+
+    /**
+     * Statistics of a processed chunk.
+     *
+     * @param start  index of the first move.
+     * @param length amount of moves.
+     * @param nanos  time spent on the chunk.
+     * @param valid  whether the chunk was verified, or generated, without errors.
+     */
+    public record ChunkReport(long start, long length, long nanos, boolean valid) {
+        /** @return throughput of the chunk in moves per second. */
+        public double movesPerSecond() { return length * 1e9 / Math.max(nanos, 1); }
+    }
+
+    /**
+     * Statistics of a whole run.
+     *
+     * @param chunks   report per chunk, ordered by move index.
+     * @param nanos    wall clock time of the run.
+     * @param checksum sum of all generated move codes; zero for verification runs.
+     */
+    public record SolutionReport(List<ChunkReport> chunks, long nanos, long checksum) {
+        /** @return whether every chunk was valid. */
+        public boolean valid() { return chunks.stream().allMatch(ChunkReport::valid); }
+
+        /** @return amount of moves processed. */
+        public long moves() { return chunks.stream().mapToLong(ChunkReport::length).sum(); }
+
+        /** @return overall throughput in moves per second. */
+        public double movesPerSecond() { return moves() * 1e9 / Math.max(nanos, 1); }
+    }
+
+    /** @param solver the solution to process, on the common pool with the default chunk size. */
+    public ParallelSolutionRunner(final OptimalSolver solver) {
+        this(solver, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param solver    the solution to process.
+     * @param pool      the pool to run on.
+     * @param chunkSize amount of moves per chunk, at most {@link Integer#MAX_VALUE}.
+     */
+    public ParallelSolutionRunner(final OptimalSolver solver, final ForkJoinPool pool, final long chunkSize) {
+        if (chunkSize < 1 || chunkSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        long total = solver.getMoveAmount();
+        long chunks = total < 0 ? -1 : (total + chunkSize - 1) / chunkSize;
+        if (chunks < 0 || chunks > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Solution too large for chunk size " + chunkSize);
+        this.solver = solver;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.chunkAmount = (int) chunks;
+    }
+
+    /**
+     * Generates the whole solution in parallel.
+     *
+     * @param sink thread-safe receiver of the generated chunks.
+     * @return the run statistics.
+     */
+    public SolutionReport generate(final ChunkSink sink) {
+        long[] sums = new long[chunkAmount];
+        SolutionReport report = run((chunk, start, length) -> {
+            int[] moves = new int[(int) length];
+            long sum = 0;
+            for (int i = 0; i < moves.length; i++) {
+                moves[i] = solver.codeAt(start + i);
+                sum += moves[i];
+            }
+            sums[chunk] = sum;
+            sink.accept(start, moves, moves.length);
+            return true;
+        });
+        return new SolutionReport(report.chunks(), report.nanos(), Arrays.stream(sums).sum());
+    }
+
+    /**
+     * Verifies the whole solution in parallel against the rules of the engine. Every chunk loads
+     * an engine with the state at its first move, the first chunk a fresh game, tries its moves on
+     * it, and compares the result with the state the next chunk starts from. The chunks thereby
+     * chain up into legal moves from a fresh game, and the last one has to complete it.
+     *
+     * @return the run statistics, see {@link SolutionReport#valid()}.
+     */
+    public SolutionReport verify() {
+        return run((chunk, start, length) -> {
+            HanoiEngine engine = new HanoiEngine();
+            if (start == 0) engine.resetGame(solver.getDiscAmount());
+            else solver.loadInto(engine, start);
+            for (long i = start; i < start + length; i++) {
+                int code = solver.codeAt(i);
+                if (engine.tryMove(MoveCode.from(code), MoveCode.to(code)) != MoveResult.OK) return false;
+            }
+            long end = start + length;
+            return end == solver.getMoveAmount() ? engine.isGameCompleted()
+                    : Arrays.equals(engine.getState(), solver.stateAt(end));
+        });
+    }
+
+    @FunctionalInterface
+    private interface ChunkWork {
+        boolean process(int chunk, long start, long length);
+    }
+
+    private SolutionReport run(final ChunkWork work) {
+        ChunkReport[] reports = new ChunkReport[chunkAmount];
+        long begin = System.nanoTime();
+        pool.invoke(new ChunkTask(work, reports, 0, chunkAmount));
+        return new SolutionReport(List.of(reports), System.nanoTime() - begin, 0);
+    }
+
+    /** Splits a range of chunks in halves until single chunks remain. */
+    private final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkWork work;
+        private final ChunkReport[] reports;
+        private final int from, to;
+
+        ChunkTask(final ChunkWork work, final ChunkReport[] reports, final int from, final int to) {
+            this.work = work;
+            this.reports = reports;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(work, reports, from, mid), new ChunkTask(work, reports, mid, to));
+                return;
+            }
+            long start = from * chunkSize;
+            long length = Math.min(chunkSize, solver.getMoveAmount() - start);
+            long begin = System.nanoTime();
+            boolean valid = work.process(from, start, length);
+            reports[from] = new ChunkReport(start, length, System.nanoTime() - begin, valid);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.dt180g.laboration_3.solver;
+
+import com.dt180g.laboration_3.support.AppConfig;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+
+/**
+ * Explores the whole state space of a game by a level-synchronous, parallel breadth-first
+ * search from the goal, producing the exact distance of every configuration as a
+ * {@link DistanceTable}. As every move can be reversed, distances from the goal equal
+ * distances to it, which makes the table usable for hints from arbitrary configurations.
+ *
+ * Configurations are base-k integers. The frontier of each level is an off-heap bitset,
+ * which threads scan in word ranges and extend with atomic bitwise or's; the distances go
+ * straight into the memory-mapped table.
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class StateSpaceExplorer {
+    /** Largest state space explored, bounded by the size of the off-heap frontier bitsets. */
+    public static final long MAX_STATES = 1L << 32;
+    private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int WORDS_PER_TASK = 1 << 12;
+
+    private final int discs, towers;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param discs  amount of discs.
+     * @param towers amount of towers.
+     * @param pool   the pool to explore each level on.
+     */
+    public StateSpaceExplorer(final int discs, final int towers, final ForkJoinPool pool) {
+        if (towers < AppConfig.TOWERS_AMOUNT_MINIMUM || towers > AppConfig.TOWERS_AMOUNT_MAXIMUM)
+            throw new IllegalArgumentException("Invalid tower amount: " + towers);
+        if (discs < 1 || discs * Math.log(towers) > Math.log(MAX_STATES) + 1e-9)
+            throw new IllegalArgumentException(String.format("Invalid disc amount for %d towers: %d", towers, discs));
+        this.discs = discs;
+        this.towers = towers;
+        this.pool = pool;
+    }
+
+    /** @param discs amount of discs. @param towers amount of towers. */
+    public StateSpaceExplorer(final int discs, final int towers) {
+        this(discs, towers, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs the exploration, writing the distance table to the given file.
+     *
+     * @param file file of the distance table, replaced if it exists.
+     * @return the table, mapped from the file.
+     * @throws IOException if the table file cannot be written.
+     */
+    public DistanceTable explore(final Path file) throws IOException {
+        DistanceTable table = DistanceTable.create(file, discs, towers);
+        long states = table.getStateAmount();
+        int words = (int) ((states + 63) >>> 6);
+        ByteBuffer current = ByteBuffer.allocateDirect(words * Long.BYTES).order(ByteOrder.nativeOrder());
+        ByteBuffer next = ByteBuffer.allocateDirect(words * Long.BYTES).order(ByteOrder.nativeOrder());
+
+        long goal = states - 1;
+        table.setEntry(goal, 1);
+        setBit(current, goal);
+
+        int level = 0;
+        long found = 1;
+        while (found > 0) {
+            if (level + 1 > DistanceTable.MAX_DISTANCE)
+                throw new IllegalStateException("Distances exceed the range of the table.");
+            final ByteBuffer frontier = current, discovered = next;
+            final int entry = level + 2;
+            LongAdder counter = new LongAdder();
+            int tasks = (words + WORDS_PER_TASK - 1) / WORDS_PER_TASK;
+            pool.submit(() -> LongStream.range(0, tasks).parallel().forEach(task -> {
+                int from = (int) task * WORDS_PER_TASK, to = Math.min(words, from + WORDS_PER_TASK);
+                counter.add(expand(table, frontier, discovered, from, to, entry));
+            })).join();
+            found = counter.sum();
+
+            current = discovered;
+            next = frontier;
+            for (int i = 0; i < words; i++) next.putLong(i * Long.BYTES, 0L);
+            if (found > 0) level++;
+        }
+        table.complete(level);
+        return table;
+    }
+
+    /* expands the frontier states within a word range, returning how many new states were found */
+    private long expand(final DistanceTable table, final ByteBuffer frontier, final ByteBuffer discovered,
+                        final int fromWord, final int toWord, final int entry) {
+        long found = 0;
+        long[] masks = new long[towers];
+        for (int w = fromWord; w < toWord; w++) {
+            for (long bits = frontier.getLong(w * Long.BYTES); bits != 0; bits &= bits - 1) {
+                long state = ((long) w << 6) + Long.numberOfTrailingZeros(bits);
+                decode(state, masks);
+                for (int from = 0; from < towers; from++) {
+                    long top = masks[from] & -masks[from];
+                    if (top == 0) continue;
+                    long step = table.power(Long.numberOfTrailingZeros(top));
+                    for (int to = 0; to < towers; to++) {
+                        long t = masks[to];
+                        if (to == from || (t != 0 && Long.compareUnsigned(top, t & -t) > 0)) continue;
+                        long neighbour = state + (to - from) * step;
+                        if (table.entry(neighbour) == DistanceTable.UNREACHED) {
+                            table.setEntry(neighbour, entry);
+                            if (setBit(discovered, neighbour)) found++;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private void decode(long state, final long[] masks) {
+        Arrays.fill(masks, 0L);
+        for (int disc = 0; disc < discs; disc++) {
+            masks[(int) (state % towers)] |= 1L << disc;
+            state /= towers;
+        }
+    }
+
+    /* sets a bit atomically, returning whether it was clear before */
+    private static boolean setBit(final ByteBuffer bitset, final long index) {
+        long bit = 1L << index;
+        return ((long) WORDS.getAndBitwiseOr(bitset, (int) (index >>> 6) * Long.BYTES, bit) & bit) == 0;
+    }
+}
@@ -0,0 +1 @@
+package com.dt180g.laboration_3.solver;
\ No newline at end of file
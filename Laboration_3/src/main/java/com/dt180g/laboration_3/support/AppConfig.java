@@ -14,14 +14,39 @@ public final class AppConfig {
 
     /* GAME CONFIG */
     public static final int TOWERS_AMOUNT = 3;
+    public static final int TOWERS_AMOUNT_MINIMUM = 3;
+    public static final int TOWERS_AMOUNT_MAXIMUM = 8;
     public static final int DISC_AMOUNT_MINIMUM = 2;
-    public static final int DISC_AMOUNT_MAXIMUM = 7;
+    public static final int DISC_AMOUNT_MAXIMUM = Long.SIZE;
+
+    /* HISTORY */
+    private static long historyHeapLimit = 1L << 24;
+
+    /** @return amount of moves the undo/redo history keeps in heap before spilling to a mapped file. */
+    public static long getHistoryHeapLimit() { return historyHeapLimit; }
+    public static void setHistoryHeapLimit(long n) { historyHeapLimit = n; }
+
+    private static int historyCheckpointInterval = 4096;
+
+    /** @return amount of moves between engine checkpoints kept in the history, bounding the cost of a jump. */
+    public static int getHistoryCheckpointInterval() { return historyCheckpointInterval; }
+    public static void setHistoryCheckpointInterval(int n) { historyCheckpointInterval = n; }
 
     /* LOGGING */
     public static final String LOG_UNDO_SYMBOL = "U";
+    public static final String LOG_REDO_SYMBOL = "R";
+    public static final String LOG_CHECKPOINT_SYMBOL = "C";
     private static String logFileName = "Hanoi.log";
     private static boolean useLog = true;
     private static boolean showReplayMoves = true;
+    private static JournalFormat journalFormat = JournalFormat.TEXT;
+    private static int journalGroupCommit = 1;
+    private static SyncPolicy journalSync = SyncPolicy.NEVER;
+    private static boolean journalAsync = false;
+    private static int journalQueueCapacity = 1 << 16;
+    private static int journalCheckpointInterval = 1 << 16;
+    private static int replayPipelineDepth = 0;
+    private static int replayIndexInterval = 1 << 12;
 
     public static boolean shouldUseLog() { return useLog; }
     public static boolean shouldShowReplayMoves() { return showReplayMoves; }
@@ -29,13 +54,48 @@ public final class AppConfig {
     public static void setShowReplayMoves(boolean b) { showReplayMoves = b; }
     public static void setLogFileName(String n) { logFileName = n; }
 
+    /** @return format of journals opened from now on. */
+    public static JournalFormat getJournalFormat() { return journalFormat; }
+    public static void setJournalFormat(JournalFormat f) { journalFormat = f; }
+    /** @return amount of journal entries written together in one group commit. */
+    public static int getJournalGroupCommit() { return journalGroupCommit; }
+    public static void setJournalGroupCommit(int n) { journalGroupCommit = n; }
+    /** @return when journal writes are forced to storage. */
+    public static SyncPolicy getJournalSync() { return journalSync; }
+    public static void setJournalSync(SyncPolicy p) { journalSync = p; }
+    /** @return true if journals opened from now on are written by a background flusher. */
+    public static boolean isJournalAsync() { return journalAsync; }
+    public static void setJournalAsync(boolean b) { journalAsync = b; }
+    /** @return amount of entries an asynchronous journal queues before logging threads wait. */
+    public static int getJournalQueueCapacity() { return journalQueueCapacity; }
+    public static void setJournalQueueCapacity(int n) { journalQueueCapacity = n; }
+    /** @return amount of moves between game checkpoints written to the journal, 0 for none. */
+    public static int getJournalCheckpointInterval() { return journalCheckpointInterval; }
+    public static void setJournalCheckpointInterval(int n) { journalCheckpointInterval = n; }
+    /** @return amount of record batches a replay reads ahead on a thread of its own, 0 to replay on one thread. */
+    public static int getReplayPipelineDepth() { return replayPipelineDepth; }
+    public static void setReplayPipelineDepth(int n) { replayPipelineDepth = n; }
+    /** @return amount of log entries between the points of a replay index, bounding the cost of a seek. */
+    public static int getReplayIndexInterval() { return replayIndexInterval; }
+    public static void setReplayIndexInterval(int n) { replayIndexInterval = n; }
+
     public static String getLogFilePath() throws URISyntaxException {
+        return getLogFilePath(logFileName);
+    }
+
+    /**
+     * Resolves a log file name to a path in the repository resource folder.
+     *
+     * @param fileName name of the log file.
+     * @return absolute path of the log file.
+     */
+    public static String getLogFilePath(String fileName) throws URISyntaxException {
         String root = new File(
             Lab3.class.getProtectionDomain()
                 .getCodeSource().getLocation().toURI().getPath()
         ).getParentFile().getParentFile().getParentFile().getAbsolutePath();
         return String.format("%s%s_RepoResources%s%s",
-                root, File.separator, File.separator, logFileName);
+                root, File.separator, File.separator, fileName);
     }
 
     /* COLOR CODES */
@@ -49,6 +109,7 @@ public final class AppConfig {
     public static final String COLOR_PILLAR      = Color.YELLOW.ansiCode;
     public static final String COLOR_TOWER_BASE  = Color.CYAN.ansiCode;
     public static final String COLOR_TOWER_INFO  = Color.BLUE.ansiCode;
+    public static final String COLOR_HINT        = Color.CYAN.ansiCode;
 
     private enum Color {
         BLACK("\u001B[30m"), RED("\u001B[31m"), GREEN("\u001B[32m"),
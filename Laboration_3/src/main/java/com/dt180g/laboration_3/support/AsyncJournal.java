@@ -0,0 +1,186 @@
+package com.dt180g.laboration_3.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous front of a {@link JournalWriter}. Logging threads append {@link JournalRecord}s
+ * into a bounded lock-free ring buffer, and a background flusher thread drains them to the writer
+ * in the order their slots were claimed, committing whenever the ring runs empty. Appending never
+ * touches the disk or a monitor; only a full ring makes a logging thread wait for the flusher,
+ * which bounds the backlog when the disk falls behind.
+ *
+ * The ring follows the same bounded multi-producer design as the command pipeline of the invoker.
+ *
+ * @author Muntaser Ibrahim
+ */
+final class AsyncJournal implements AutoCloseable {
+    /* set in the tail once closed, so that no slot can be claimed after closing */
+    private static final long CLOSED = Long.MIN_VALUE;
+    private static final int SPINS = 64;
+    static final int MIN_CAPACITY = 16;
+
+    private final JournalWriter writer;
+    private final long[] records;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong requested = new AtomicLong();
+    private final LongAdder stalls = new LongAdder();
+    private long head = 0;
+    private volatile long flushed = 0;
+    private volatile boolean waiting = false;
+    private volatile Throwable failure;
+    private final Thread flusher;
+
+    /**
+     * Starts an asynchronous journal and its flusher thread.
+     *
+     * @param writer   the writer the flusher drains the records to.
+     * @param capacity amount of records the ring holds, rounded up to a power of two of at least
+     *                 {@link #MIN_CAPACITY}, so that a checkpoint always fits.
+     */
+    AsyncJournal(JournalWriter writer, int capacity) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("Invalid journal capacity: " + capacity);
+        int size = Math.max(MIN_CAPACITY, Integer.highestOneBit(capacity - 1) << 1);
+        this.writer = writer;
+        this.records = new long[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+        flusher = new Thread(this::drain, "hanoi-journal");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Enqueues a record, waiting while the ring is full.
+     *
+     * @param record the record to journal.
+     * @throws IllegalStateException if the journal is closed, or its flusher failed.
+     */
+    void append(long record) {
+        checkFailure();
+        long position = claim(1);
+        int slot = (int) position & mask;
+        records[slot] = record;
+        sequences.set(slot, position + 1);
+        if (waiting) LockSupport.unpark(flusher);
+    }
+
+    /**
+     * Enqueues records in consecutive slots, so that they reach the writer together, waiting
+     * while the ring is short of room.
+     *
+     * @param words the records to journal, at most {@link #MIN_CAPACITY}.
+     * @throws IllegalStateException if the journal is closed, or its flusher failed.
+     */
+    void appendAll(long[] words) {
+        checkFailure();
+        long position = claim(words.length);
+        for (int i = 0; i < words.length; i++) records[(int) (position + i) & mask] = words[i];
+        for (int i = 0; i < words.length; i++) sequences.set((int) (position + i) & mask, position + i + 1);
+        if (waiting) LockSupport.unpark(flusher);
+    }
+
+    /* claims consecutive slots; slots are freed in order, so the last one being free frees them all */
+    private long claim(int amount) {
+        long position;
+        int spins = 0;
+        while (true) {
+            position = tail.get();
+            if ((position & CLOSED) != 0) throw new IllegalStateException("The journal is closed.");
+            long last = position + amount - 1;
+            long free = sequences.get((int) last & mask) - last;
+            if (free == 0) {
+                if (tail.compareAndSet(position, position + amount)) return position;
+            } else if (free < 0) {
+                // the ring is full; wait for the flusher to free the slot
+                if (spins++ == 0) stalls.increment();
+                checkFailure();
+                if (spins < SPINS) Thread.onSpinWait();
+                else LockSupport.parkNanos(1_000);
+            }
+        }
+    }
+
+    /**
+     * Waits until every record appended before the call has been committed to the file.
+     */
+    void flush() {
+        long target = tail.get() & ~CLOSED;
+        requested.accumulateAndGet(target, Math::max);
+        LockSupport.unpark(flusher);
+        int spins = 0;
+        while (flushed < target) {
+            checkFailure();
+            if (!flusher.isAlive()) break;
+            if (++spins < SPINS) Thread.onSpinWait();
+            else LockSupport.parkNanos(10_000);
+        }
+        checkFailure();
+    }
+
+    /** @return amount of appends that had to wait for a full ring. */
+    long getStalls() { return stalls.sum(); }
+
+    private void drain() {
+        try {
+            while (true) {
+                int slot = (int) head & mask;
+                if (sequences.get(slot) == head + 1) {
+                    long record = records[slot];
+                    sequences.set(slot, head + mask + 1);
+                    head++;
+                    writer.write(record);
+                    long target = requested.get();
+                    if (flushed < target && head >= target) commit();
+                    continue;
+                }
+                if (flushed != head) commit();
+                long last = tail.get();
+                if ((last & CLOSED) != 0) {
+                    if (head == (last & ~CLOSED)) return;
+                    Thread.onSpinWait(); // a claimed slot is about to be published
+                    continue;
+                }
+                waiting = true;
+                if (sequences.get(slot) != head + 1 && (tail.get() & CLOSED) == 0
+                        && requested.get() <= flushed) LockSupport.park(this);
+                waiting = false;
+            }
+        } catch (Throwable e) {
+            // an error too, or the flusher would die unnoticed and leave a full ring waiting forever
+            failure = e;
+        }
+    }
+
+    private void commit() {
+        writer.flush();
+        flushed = head;
+    }
+
+    private void checkFailure() {
+        Throwable e = failure;
+        if (e != null) throw new IllegalStateException("The journal flusher failed.", e);
+    }
+
+    /**
+     * Stops accepting records, and waits for the flusher to commit the records already appended.
+     * The writer is left open.
+     */
+    @Override
+    public void close() {
+        tail.getAndUpdate(t -> t | CLOSED);
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+}
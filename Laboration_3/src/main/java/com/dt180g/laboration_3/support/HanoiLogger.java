@@ -2,71 +2,289 @@ package com.dt180g.laboration_3.support;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.util.logging.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
 
 /**
- * Singleton logger for the Hanoi game application.
- * Writes each move or undo symbol on its own line to a file.
+ * Logger for the Hanoi game application, journaling each move, undo or redo entry to a file
+ * through a {@link JournalWriter}, in the {@link JournalFormat} configured in {@link AppConfig}
+ * when the file is opened. {@link #getInstance()} is the lazy singleton journal of the default
+ * game, logging to {@link AppConfig#getLogFilePath()}. Further game sessions may hold
+ * journals of their own through {@link #forFile(String)} or {@link #disabled()}.
+ *
+ * With {@link AppConfig#isJournalAsync()} set when the file is opened, entries are handed to an
+ * {@link AsyncJournal} instead, so that logging threads never wait for the disk unless its
+ * queue is full; {@link #flush()} waits for the entries logged so far to be written.
  *
  * @author Muntaser Ibrahim
  */
 public class HanoiLogger {
-    private static HanoiLogger instance;
-    private Logger logger;
-    private Handler handler;
-    private boolean initialized = false;
+    private static final HanoiLogger DISABLED = new HanoiLogger(null, false);
+
+    private final String fileName;
+    private final boolean enabled;
+    private volatile JournalWriter writer;
+    private volatile AsyncJournal async;
+    private volatile boolean headed;
+    private JournalCompactor compactor;
 
     private HanoiLogger() {
-        if (AppConfig.shouldUseLog()) initializeLogger();
+        this(null, true);
     }
 
-    public static synchronized HanoiLogger getInstance() {
-        if (instance == null) instance = new HanoiLogger();
-        if (AppConfig.shouldUseLog() && !instance.initialized) {
-            instance.initializeLogger();
-        }
-        return instance;
+    /**
+     * @param fileName name of the log file, or null to follow {@link AppConfig}.
+     * @param enabled  false for a journal that never writes anything.
+     */
+    private HanoiLogger(String fileName, boolean enabled) {
+        this.fileName = fileName;
+        this.enabled = enabled;
+    }
+
+    /* initialized on first use by the class loader, sparing callers a lock */
+    private static final class Holder {
+        private static final HanoiLogger INSTANCE = new HanoiLogger();
+    }
+
+    public static HanoiLogger getInstance() { return Holder.INSTANCE; }
+
+    /**
+     * Creates a journal of its own, independent of the default game's journal.
+     *
+     * @param fileName name of the log file, resolved like {@link AppConfig#getLogFilePath(String)}.
+     * @return a new journal; the file is not opened until the first entry is logged.
+     */
+    public static HanoiLogger forFile(String fileName) {
+        return new HanoiLogger(Objects.requireNonNull(fileName), true);
+    }
+
+    /** @return a shared journal that discards everything, for sessions without a log. */
+    public static HanoiLogger disabled() { return DISABLED; }
+
+    private boolean shouldLog() { return enabled && AppConfig.shouldUseLog(); }
+
+    private JournalWriter writer() {
+        JournalWriter current = writer;
+        return current != null ? current : open();
+    }
+
+    private synchronized JournalWriter open() {
+        if (writer == null) initializeLogger();
+        return writer;
     }
 
-    private void initializeLogger() {
+    private synchronized void initializeLogger() {
+        compactor = null;
+        openWriter(AppConfig.getJournalFormat(), false);
+    }
+
+    private void openWriter(JournalFormat format, boolean append) {
         try {
-            logger = Logger.getLogger(HanoiLogger.class.getName());
-            logger.setUseParentHandlers(false);
-            String path = AppConfig.getLogFilePath();
-            handler = new FileHandler(path, false);
-            handler.setLevel(Level.INFO);
-            handler.setFormatter(new SimpleFormatter(){
-                @Override public synchronized String format(LogRecord r) {
-                    return r.getMessage() + System.lineSeparator();
-                }
-            });
-            logger.addHandler(handler);
-            logger.setLevel(Level.INFO);
-            initialized = true;
+            JournalWriter opened = new JournalWriter(path(), format,
+                    AppConfig.getJournalGroupCommit(), AppConfig.getJournalSync(), append);
+            headed = append;
+            async = AppConfig.isJournalAsync() ? new AsyncJournal(opened, AppConfig.getJournalQueueCapacity()) : null;
+            writer = opened; // published last, so that a thread seeing the writer sees its queue
         } catch (URISyntaxException|IOException e) {
             throw new RuntimeException("Failed to initialize logger", e);
         }
     }
 
-    /** Logs a single line at INFO level. */
+    private Path path() throws URISyntaxException {
+        return Path.of(fileName == null ? AppConfig.getLogFilePath() : AppConfig.getLogFilePath(fileName));
+    }
+
+    /* hands a record to the queue, or writes it in the calling thread */
+    private void log(long record) {
+        JournalWriter current = writer();
+        AsyncJournal queue = async;
+        if (queue != null) queue.append(record);
+        else current.write(record);
+    }
+
+    /** Logs a single line of text, opening the log file on first use. */
     public void logInfo(String msg) {
-        if (!AppConfig.shouldUseLog() || !initialized) return;
-        logger.info(msg);
+        if (!shouldLog()) return;
+        JournalWriter current = writer();
+        if (async == null) {
+            current.text(msg);
+            return;
+        }
+        long record = headed ? JournalRecord.parseEntry(msg) : JournalRecord.parseHeader(msg);
+        headed = true;
+        log(record);
+    }
+
+    /**
+     * Logs the header of a game: the disc amount, followed by the tower amount unless the default.
+     *
+     * @param discs  amount of discs.
+     * @param towers amount of towers.
+     */
+    public void logHeader(int discs, int towers) {
+        if (!shouldLog()) return;
+        log(JournalRecord.header(discs, towers));
+        headed = true;
+    }
+
+    /**
+     * Logs a checkpoint of the game, letting a resume skip the entries before it.
+     *
+     * @param towers   disc mask per tower.
+     * @param moves    amount of moves made.
+     * @param position position in the undo/redo history.
+     */
+    public void logCheckpoint(long[] towers, long moves, long position) {
+        if (!shouldLog()) return;
+        long[] words = JournalRecord.checkpoint(towers, moves, position);
+        JournalWriter current = writer();
+        AsyncJournal queue = async;
+        if (queue != null) queue.appendAll(words);
+        else current.checkpoint(words);
+    }
+
+    /**
+     * Logs a move.
+     *
+     * @param from source tower (1-based).
+     * @param to   destination tower (1-based).
+     */
+    public void logMove(int from, int to) {
+        if (shouldLog()) log(JournalRecord.move(from, to));
+    }
+
+    /**
+     * Logs several moves as one group commit, one entry per move.
+     *
+     * @param from source tower per move.
+     * @param to   destination tower per move.
+     */
+    public void logMoves(int[] from, int[] to) {
+        if (!shouldLog()) return;
+        for (int i = 0; i < from.length; i++) log(JournalRecord.move(from[i], to[i]));
+        if (async == null) writer().flush();
+    }
+
+    /**
+     * Logs undoing moves as a single entry: the undo symbol, followed by the amount if above one.
+     *
+     * @param moves amount of moves undone.
+     */
+    public void logUndo(long moves) {
+        if (shouldLog()) log(JournalRecord.undo(moves));
+    }
+
+    /**
+     * Logs redoing moves as a single entry: the redo symbol, followed by the amount if above one.
+     *
+     * @param moves amount of moves redone.
+     */
+    public void logRedo(long moves) {
+        if (shouldLog()) log(JournalRecord.redo(moves));
+    }
+
+    /**
+     * Writes the entries logged so far to the log file, waiting for the background flusher
+     * if the journal is asynchronous.
+     */
+    public void flush() {
+        JournalWriter current = writer;
+        if (current == null) return;
+        AsyncJournal queue = async;
+        if (queue != null) queue.flush();
+        else current.flush();
+    }
+
+    /** @return amount of entries that had to wait for a full asynchronous queue since opening. */
+    public long getStalls() {
+        AsyncJournal queue = async;
+        return queue == null ? 0 : queue.getStalls();
+    }
+
+    /**
+     * Rewrites the log file to the net game logged so far, see {@link JournalCompactor}, and goes
+     * on appending to the compacted file. Only the entries logged since the previous compaction
+     * are read. Threads logging to this journal need to wait for the compaction.
+     */
+    public synchronized void compact() {
+        JournalWriter current = writer;
+        if (current == null) return;
+        closeLogger();
+        try {
+            if (compactor == null) compactor = new JournalCompactor();
+            compactor.compact(path(), current.getFormat());
+        } catch (URISyntaxException e) {
+            throw new RuntimeException("Failed to compact logger", e);
+        } finally {
+            openWriter(current.getFormat(), true);
+        }
+    }
+
+    /**
+     * Goes on appending to the existing log file, in the format it was written in, such as after
+     * replaying it. An entry torn at its end is cut off. Without a log file, the next entry starts one.
+     */
+    public synchronized void append() {
+        if (!shouldLog()) return;
+        closeLogger();
+        compactor = null;
+        try {
+            Path file = path();
+            if (Files.exists(file)) openWriter(JournalFormat.of(file), true);
+        } catch (URISyntaxException e) {
+            throw new RuntimeException("Failed to initialize logger", e);
+        }
+    }
+
+    /**
+     * Logs journal records as they are, such as those of a game replayed from another log, in one
+     * group commit. The words of a checkpoint need to be logged together.
+     *
+     * @param records {@link JournalRecord}s, starting with the header of the game on a new log.
+     * @param offset  index of the first record.
+     * @param length  amount of records.
+     */
+    public void logRecords(long[] records, int offset, int length) {
+        if (!shouldLog() || length == 0) return;
+        for (int i = offset; i < offset + length; i++) log(records[i]);
+        headed = true;
+        flush();
+    }
+
+    /**
+     * @return path of the log file, or null if this journal does not log.
+     */
+    public Path getFile() {
+        if (!shouldLog()) return null;
+        try {
+            return path();
+        } catch (URISyntaxException e) {
+            throw new RuntimeException("Failed to resolve log file", e);
+        }
     }
 
     /** Closes and re-opens the log (for new games). */
-    public void resetLogger() {
-        if (!AppConfig.shouldUseLog()) return;
+    public synchronized void resetLogger() {
+        if (!shouldLog()) return;
         closeLogger();
         initializeLogger();
     }
 
-    /** Close file handlers so we can re-initialize. */
-    public void closeLogger() {
-        if (handler != null) {
-            handler.close();
-            logger.removeHandler(handler);
+    /**
+     * Closes the log file so we can re-initialize, after writing every entry logged so far.
+     * Threads logging to this journal need to be done before closing it.
+     */
+    public synchronized void closeLogger() {
+        JournalWriter closing = writer;
+        if (closing == null) return;
+        AsyncJournal queue = async;
+        writer = null;
+        async = null;
+        try {
+            if (queue != null) queue.close();
+        } finally {
+            closing.close();
         }
-        initialized = false;
     }
 }
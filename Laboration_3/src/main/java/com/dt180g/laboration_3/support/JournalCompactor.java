@@ -0,0 +1,181 @@
+package com.dt180g.laboration_3.support;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Rewrites a move journal to its net game: the header, the moves of the current line of play and,
+ * if moves were undone, a single undo entry keeping them available to redo. Undone moves that were
+ * replaced by other moves are dropped, and undo and redo entries cancel out against the moves they
+ * refer to, so the journal grows with the game rather than with its history of clicks. Branches of
+ * the undo tree other than the current one are not kept. The state of the game is followed along,
+ * so that a checkpoint holding another state than the moves lead to, as one taken after a state
+ * was restored, is kept, and the moves after it rebased on it, as replaying it does. A checkpoint
+ * the moves lead to anyway is dropped, unless it is taken before any move. A text entry torn at
+ * the end of the journal is left out, as it is when appending to the journal.
+ *
+ * The compacted journal is written next to the original and moved over it atomically, so a crash
+ * leaves either journal whole. A compactor folds the journal incrementally: each compaction only
+ * reads the entries appended since the previous one, into memory at once, so these may take up at
+ * most 2 GB. A checkpoint record of a length no checkpoint has, as garbage read from a binary
+ * journal, is skipped.
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class JournalCompactor {
+    private int discs = -1, towers;
+    private byte[] line = new byte[1 << 10];
+    private int size = 0, cursor = 0;
+    private long offset = 0;
+    private long[] base, checkpoint;
+    private int checkpointWords;
+    /* the state at the cursor, and its move counter */
+    private long[] state;
+    private long moves;
+
+    /**
+     * Compacts a journal file of either format once, keeping its format.
+     *
+     * @param file the journal file.
+     * @throws UncheckedIOException     if the journal cannot be read or written.
+     * @throws IllegalArgumentException if the journal is larger than 2 GB.
+     */
+    public static void compact(Path file) {
+        new JournalCompactor().compact(file, JournalFormat.of(file));
+    }
+
+    /**
+     * Folds the entries appended to a journal since the last call, and replaces the journal by its
+     * net game. The file may only have been appended to since.
+     *
+     * @param file   the journal file.
+     * @param format the format of the journal.
+     * @throws IllegalArgumentException if the entries appended since are more than 2 GB.
+     */
+    void compact(Path file, JournalFormat format) {
+        try {
+            fold(file, format);
+            if (discs < 0) return; // nothing journaled yet
+            Path temp = file.resolveSibling(file.getFileName() + ".compact");
+            try (JournalWriter out = new JournalWriter(temp, format, 1 << 12, SyncPolicy.ON_CLOSE, false)) {
+                out.header(discs, towers);
+                if (base != null) out.checkpoint(base);
+                for (int i = 0; i < size; i++) out.move(line[i] & 0xF, line[i] >>> 4 & 0xF);
+                if (cursor < size) out.undo(size - cursor);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            offset = Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact journal", e);
+        }
+    }
+
+    /* reads the entries from the offset on into memory, leaving out a binary record cut short */
+    private void fold(Path file, JournalFormat format) throws IOException {
+        ByteBuffer tail;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() - offset > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("The journal is too large to compact at once.");
+            tail = ByteBuffer.allocate((int) (channel.size() - offset));
+            channel.position(offset);
+            while (tail.hasRemaining() && channel.read(tail) >= 0) { }
+            tail.flip();
+        }
+        if (format == JournalFormat.BINARY) {
+            if (offset == 0 && tail.remaining() >= JournalRecord.SIZE) tail.getLong(); // the magic
+            while (tail.remaining() >= JournalRecord.SIZE) apply(tail.getLong());
+            return;
+        }
+        if (format == JournalFormat.PACKED) {
+            if (offset == 0) {
+                if (tail.remaining() < 2 * JournalRecord.SIZE) return;
+                tail.getLong(); // the magic
+                apply(tail.getLong());
+            }
+            PackedMoves.Decoder decoder = new PackedMoves.Decoder(towers, tail);
+            long[] records = new long[1 << 12];
+            for (int read; (read = decoder.next(records, 0, records.length)) > 0; )
+                for (int i = 0; i < read; i++) apply(records[i]);
+            return;
+        }
+        String text = StandardCharsets.UTF_8.decode(tail).toString();
+        // a last line without its line break is torn
+        for (String entry : text.substring(0, text.lastIndexOf('\n') + 1).split("\\R")) {
+            if (entry.isBlank()) continue;
+            if (discs < 0) apply(JournalRecord.parseHeader(entry));
+            else if (entry.startsWith(AppConfig.LOG_CHECKPOINT_SYMBOL)) applyCheckpoint(JournalRecord.parseCheckpoint(entry));
+            else apply(JournalRecord.parseEntry(entry));
+        }
+    }
+
+    private void apply(long record) {
+        if (checkpoint != null) {
+            checkpoint[checkpointWords++] = record;
+            if (checkpointWords == checkpoint.length) {
+                applyCheckpoint(JournalRecord.isCheckpoint(checkpoint, 0, checkpoint.length) ? checkpoint : null);
+                checkpoint = null;
+            }
+            return;
+        }
+        switch (JournalRecord.type(record)) {
+            case JournalRecord.HEADER -> {
+                discs = JournalRecord.discs(record);
+                towers = JournalRecord.towers(record);
+                size = cursor = 0;
+                base = null;
+                state = new long[towers];
+                state[0] = discs == Long.SIZE ? -1L : (1L << discs) - 1;
+                moves = 0;
+            }
+            case JournalRecord.CHECKPOINT -> {
+                if (!JournalRecord.hasCheckpointLength(record)) return;
+                checkpoint = new long[JournalRecord.checkpointLength(record)];
+                checkpoint[0] = record;
+                checkpointWords = 1;
+            }
+            case JournalRecord.MOVE -> {
+                if (cursor == line.length) line = Arrays.copyOf(line, line.length * 2);
+                line[cursor++] = (byte) record; // source and destination tower, as in the record
+                size = cursor;
+                move(JournalRecord.from(record), JournalRecord.to(record), 1);
+            }
+            case JournalRecord.UNDO -> {
+                int to = (int) Math.max(0, cursor - JournalRecord.amount(record));
+                while (cursor > to) move(line[--cursor] >>> 4 & 0xF, line[cursor] & 0xF, -1);
+            }
+            case JournalRecord.REDO -> {
+                int to = (int) Math.min(size, cursor + JournalRecord.amount(record));
+                for (; cursor < to; cursor++) move(line[cursor] & 0xF, line[cursor] >>> 4 & 0xF, 1);
+            }
+            default -> throw new IllegalArgumentException("Unknown journal record: " + Long.toHexString(record));
+        }
+    }
+
+    /* moves the top disc between two towers (1-based) of the state */
+    private void move(int from, int to, int count) {
+        long top = state[from - 1] & -state[from - 1];
+        state[from - 1] ^= top;
+        state[to - 1] |= top;
+        moves += count;
+    }
+
+    /* a checkpoint of another state than the moves lead to restores it, and starts the line over */
+    private void applyCheckpoint(long[] words) {
+        if (words == null) return;
+        long[] restored = JournalRecord.checkpointTowers(words, 0);
+        long restoredMoves = JournalRecord.checkpointMoves(words, 0);
+        if (size > 0 && restoredMoves == moves && Arrays.equals(restored, state)) return;
+        base = words;
+        state = restored;
+        moves = restoredMoves;
+        size = cursor = 0;
+    }
+}
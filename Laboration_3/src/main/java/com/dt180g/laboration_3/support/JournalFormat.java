@@ -0,0 +1,47 @@
+package com.dt180g.laboration_3.support;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File formats of the move journal written by {@link HanoiLogger}.
+ *
+ * @author Muntaser Ibrahim
+ */
+public enum JournalFormat {
+    /** One human readable line per entry, as replayed from the earliest versions of the game. */
+    TEXT,
+    /** Fixed-width 8 byte records, see {@link JournalRecord}. */
+    BINARY,
+    /** A few bits per move, see {@link PackedMoves}. */
+    PACKED;
+
+    /**
+     * @param start the first 8 bytes of a journal file, big-endian.
+     * @return the format of the journal.
+     */
+    public static JournalFormat of(final long start) {
+        if (start == JournalRecord.MAGIC) return BINARY;
+        if (start == PackedMoves.MAGIC) return PACKED;
+        return TEXT;
+    }
+
+    /**
+     * @param file a journal file.
+     * @return the format of the journal, read from its first bytes.
+     * @throws UncheckedIOException if the file cannot be read.
+     */
+    public static JournalFormat of(final Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(JournalRecord.SIZE);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) { }
+            return magic.position() == JournalRecord.SIZE ? of(magic.getLong(0)) : TEXT;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read journal", e);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.dt180g.laboration_3.support;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Utility class encoding entries of the binary move journal as fixed-width 8 byte records.
+ * The top four bits of a record hold its type, and the remaining 60 bits its payload:
+ *
+ * <ul>
+ *   <li>{@link #HEADER}: disc amount in bits 0-7, tower amount in bits 8-15.</li>
+ *   <li>{@link #MOVE}: source tower in bits 0-3, destination tower in bits 4-7 (1-based).</li>
+ *   <li>{@link #UNDO} and {@link #REDO}: the amount of moves undone or redone.</li>
+ *   <li>{@link #CHECKPOINT}: the amount of words following it, before its {@link #CHECKPOINT_END}.</li>
+ * </ul>
+ *
+ * A checkpoint of the game spans several words: its record, the move amount, the history
+ * position, the disc mask of every tower, and an end record holding the word amount and a
+ * CRC-32C of the words in between, which tells a whole checkpoint from a torn one.
+ *
+ * A binary journal starts with {@link #MAGIC}, which tells it apart from a text journal.
+ * Records are written big-endian.
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class JournalRecord {
+    private JournalRecord() { throw new IllegalStateException("Utility class"); }
+
+    /** "HNJL" followed by the format version. */
+    public static final long MAGIC = 0x484E4A4C_00000001L;
+    public static final int SIZE = Long.BYTES;
+
+    public static final int HEADER = 1, MOVE = 2, UNDO = 3, REDO = 4, CHECKPOINT = 5, CHECKPOINT_END = 6;
+    private static final long PAYLOAD = (1L << 60) - 1;
+
+    public static long header(final int discs, final int towers) {
+        return (long) HEADER << 60 | (towers & 0xFF) << 8 | discs & 0xFF;
+    }
+
+    public static long move(final int from, final int to) {
+        return (long) MOVE << 60 | (to & 0xF) << 4 | from & 0xF;
+    }
+
+    public static long undo(final long moves) { return (long) UNDO << 60 | moves & PAYLOAD; }
+    public static long redo(final long moves) { return (long) REDO << 60 | moves & PAYLOAD; }
+
+    /**
+     * Encodes a checkpoint of a game.
+     *
+     * @param towers   disc mask per tower.
+     * @param moves    amount of moves made.
+     * @param position position in the undo/redo history.
+     * @return the words of the checkpoint, from its record to its end record.
+     */
+    public static long[] checkpoint(final long[] towers, final long moves, final long position) {
+        int n = towers.length + 2;
+        long[] words = new long[n + 2];
+        words[0] = (long) CHECKPOINT << 60 | n;
+        words[1] = moves;
+        words[2] = position;
+        System.arraycopy(towers, 0, words, 3, towers.length);
+        words[n + 1] = (long) CHECKPOINT_END << 60 | (long) n << 32 | crc(words, 1, n) & 0xFFFFFFFFL;
+        return words;
+    }
+
+    /**
+     * Tells whether words hold a whole checkpoint, as encoded by {@link #checkpoint(long[], long, long)}.
+     *
+     * @param words  array holding the words.
+     * @param offset index of the checkpoint record.
+     * @param length amount of words available from the offset on.
+     * @return true if the checkpoint is whole and matches its checksum.
+     */
+    public static boolean isCheckpoint(final long[] words, final int offset, final int length) {
+        if (length < 2 || type(words[offset]) != CHECKPOINT || !hasCheckpointLength(words[offset])) return false;
+        long n = amount(words[offset]);
+        if (n + 2 > length) return false;
+        long end = words[offset + (int) n + 1];
+        return type(end) == CHECKPOINT_END && (end >>> 32 & 0xFFFFFFF) == n
+                && (int) end == crc(words, offset + 1, (int) n);
+    }
+
+    /**
+     * Tells whether a checkpoint record holds an amount of words a checkpoint of any allowed amount
+     * of towers has, so that the words of a record read from a file can be collected.
+     *
+     * @param record a checkpoint record.
+     * @return true if the amount is within the tower bounds of {@link AppConfig}.
+     */
+    public static boolean hasCheckpointLength(final long record) {
+        long n = amount(record);
+        return n >= AppConfig.TOWERS_AMOUNT_MINIMUM + 2 && n <= AppConfig.TOWERS_AMOUNT_MAXIMUM + 2;
+    }
+
+    /** @return amount of words of a checkpoint, from its record to its end record. */
+    public static int checkpointLength(final long record) { return (int) amount(record) + 2; }
+    /** @return amount of moves made at a checkpoint starting at the given index. */
+    public static long checkpointMoves(final long[] words, final int offset) { return words[offset + 1]; }
+    /** @return history position at a checkpoint starting at the given index. */
+    public static long checkpointPosition(final long[] words, final int offset) { return words[offset + 2]; }
+    /** @return disc mask per tower at a checkpoint starting at the given index. */
+    public static long[] checkpointTowers(final long[] words, final int offset) {
+        return Arrays.copyOfRange(words, offset + 3, offset + checkpointLength(words[offset]) - 1);
+    }
+
+    private static int crc(final long[] words, final int offset, final int length) {
+        ByteBuffer bytes = ByteBuffer.allocate(length * Long.BYTES);
+        for (int i = 0; i < length; i++) bytes.putLong(words[offset + i]);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.flip());
+        return (int) crc.getValue();
+    }
+
+    public static int type(final long record)   { return (int) (record >>> 60); }
+    public static int discs(final long record)  { return (int) record & 0xFF; }
+    public static int towers(final long record) { return (int) (record >>> 8) & 0xFF; }
+    public static int from(final long record)   { return (int) record & 0xF; }
+    public static int to(final long record)     { return (int) (record >>> 4) & 0xF; }
+    public static long amount(final long record) { return record & PAYLOAD; }
+
+    /**
+     * Parses a line of a text journal other than the header.
+     *
+     * @param line a move "from to", or an undo or redo symbol, optionally followed by an amount.
+     * @return the record of the line.
+     * @throws NumberFormatException if the line is no journal entry.
+     */
+    public static long parseEntry(final String line) {
+        String[] parts = line.trim().split(" ");
+        long amount = parts.length > 1 ? Long.parseLong(parts[1]) : 1;
+        if (parts[0].equals(AppConfig.LOG_UNDO_SYMBOL)) return undo(amount);
+        if (parts[0].equals(AppConfig.LOG_REDO_SYMBOL)) return redo(amount);
+        if (parts.length != 2) throw new NumberFormatException("Not a journal entry: " + line);
+        return move(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    /**
+     * Formats a checkpoint as a line of a text journal: the checkpoint symbol, the move amount and
+     * history position, then the disc masks and the checksum in hexadecimal.
+     *
+     * @param words the words of the checkpoint.
+     * @return the line of the checkpoint.
+     */
+    public static String formatCheckpoint(final long[] words) {
+        StringBuilder line = new StringBuilder(AppConfig.LOG_CHECKPOINT_SYMBOL);
+        line.append(' ').append(words[1]).append(' ').append(words[2]);
+        for (int i = 3; i < words.length - 1; i++) line.append(' ').append(Long.toHexString(words[i]));
+        return line.append(' ').append(Integer.toHexString((int) words[words.length - 1])).toString();
+    }
+
+    /**
+     * Parses a checkpoint line of a text journal.
+     *
+     * @param line a line starting with the checkpoint symbol.
+     * @return the words of the checkpoint, or null if the line is no whole checkpoint.
+     */
+    public static long[] parseCheckpoint(final String line) {
+        try {
+            String[] parts = line.trim().split(" ");
+            if (!parts[0].equals(AppConfig.LOG_CHECKPOINT_SYMBOL) || parts.length < 7) return null;
+            long[] towers = new long[parts.length - 4];
+            for (int i = 0; i < towers.length; i++) towers[i] = Long.parseUnsignedLong(parts[3 + i], 16);
+            long[] words = checkpoint(towers, Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+            int crc = Integer.parseUnsignedInt(parts[parts.length - 1], 16);
+            return crc == (int) words[words.length - 1] ? words : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses the first line of a text journal.
+     *
+     * @param line disc amount, optionally followed by the tower amount.
+     * @return the header record of the line.
+     */
+    public static long parseHeader(final String line) {
+        String[] parts = line.trim().split(" ");
+        int towers = parts.length > 1 ? Integer.parseInt(parts[1]) : AppConfig.TOWERS_AMOUNT;
+        return header(Integer.parseInt(parts[0]), towers);
+    }
+}
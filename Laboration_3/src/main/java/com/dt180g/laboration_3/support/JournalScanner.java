@@ -0,0 +1,236 @@
+package com.dt180g.laboration_3.support;
+
+import com.dt180g.laboration_3.validation.MalformedJournalException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Parser of a text move journal, scanning the bytes of the file straight into
+ * {@link JournalRecord}s without creating a string, or any other object, per entry. The file is
+ * memory-mapped in windows of up to {@link #WINDOW} bytes, each mapped from the start of the line
+ * the previous one cut, so that journals of any size are parsed.
+ *
+ * Entries are the lines written by {@link JournalWriter}: a move "from to", an undo or redo
+ * symbol optionally followed by an amount, or a checkpoint, see
+ * {@link JournalRecord#formatCheckpoint(long[])}. Blank lines are skipped, and a last line without
+ * its line break is left out as torn by a crash, as is a checkpoint failing its checksum. Any other
+ * line that is no entry throws a {@link MalformedJournalException} telling the offset of the
+ * first byte at fault.
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class JournalScanner implements RecordSource {
+    /** Most bytes mapped at once. */
+    static final long WINDOW = 1L << 30;
+
+    private static final byte UNDO = (byte) AppConfig.LOG_UNDO_SYMBOL.charAt(0);
+    private static final byte REDO = (byte) AppConfig.LOG_REDO_SYMBOL.charAt(0);
+    private static final byte CHECKPOINT = (byte) AppConfig.LOG_CHECKPOINT_SYMBOL.charAt(0);
+
+    private final FileChannel channel;
+    private final long size;
+    private final long window;
+    private final long header;
+    private final long[] hex = new long[AppConfig.TOWERS_AMOUNT_MAXIMUM + 1];
+    private MappedByteBuffer map;
+    private long base;
+    private int next;
+    private int pos, end;
+    private long[] words;
+    private int word;
+
+    /**
+     * Starts parsing a journal at its first line, the header.
+     *
+     * @param channel the journal file, left open.
+     * @throws IOException               if the file cannot be mapped.
+     * @throws MalformedJournalException if the journal holds no header.
+     */
+    public JournalScanner(final FileChannel channel) throws IOException {
+        this(channel, WINDOW);
+    }
+
+    /**
+     * Starts parsing a journal at its first line, mapping windows of the given size.
+     *
+     * @param channel the journal file, left open.
+     * @param window  most bytes mapped at once.
+     */
+    JournalScanner(final FileChannel channel, final long window) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.window = window;
+        map(0);
+        if (!nextLine()) throw new MalformedJournalException(0, "The log holds no game.");
+        int discs = (int) number(Byte.MAX_VALUE);
+        skipSpaces();
+        int towers = pos < end ? (int) number(Byte.MAX_VALUE) : AppConfig.TOWERS_AMOUNT;
+        endOfLine();
+        this.header = JournalRecord.header(discs, towers);
+    }
+
+    /**
+     * Starts parsing a journal at the start of a line after its header.
+     *
+     * @param channel  the journal file, left open.
+     * @param position byte offset of the line.
+     * @param header   the header record of the journal.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public JournalScanner(final FileChannel channel, final long position, final long header) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.window = WINDOW;
+        this.header = header;
+        map(position);
+    }
+
+    /** @return the header record of the journal. */
+    public long getHeader() { return header; }
+
+    /** @return byte offset of the next line. */
+    @Override
+    public long getPosition() { return base + next; }
+
+    /**
+     * Parses the next entries, after the header.
+     *
+     * @throws MalformedJournalException if a line is no entry.
+     */
+    @Override
+    public int next(final long[] records, final int offset, final int length) {
+        int n = 0;
+        while (n < length) {
+            if (words != null) {
+                records[offset + n++] = words[word++];
+                if (word == words.length) words = null;
+                continue;
+            }
+            if (!nextLine()) break;
+            skipSpaces();
+            if (pos == end) continue;
+            byte symbol = map.get(pos);
+            if (symbol == UNDO || symbol == REDO) {
+                pos++;
+                long amount = 1;
+                if (pos < end) {
+                    separator();
+                    skipSpaces();
+                    if (pos < end) amount = number(JournalRecord.amount(-1));
+                }
+                endOfLine();
+                records[offset + n++] = symbol == UNDO ? JournalRecord.undo(amount) : JournalRecord.redo(amount);
+            } else if (symbol == CHECKPOINT) {
+                pos++;
+                separator();
+                words = checkpoint();
+                word = 0;
+            } else {
+                int from = (int) number(0xF);
+                int to = (int) number(0xF);
+                endOfLine();
+                records[offset + n++] = JournalRecord.move(from, to);
+            }
+        }
+        return n;
+    }
+
+    /* the words of a checkpoint line, or null if it fails its checksum */
+    private long[] checkpoint() {
+        long moves = number(Long.MAX_VALUE);
+        long position = number(Long.MAX_VALUE);
+        int count = 0;
+        for (skipSpaces(); pos < end; skipSpaces()) {
+            if (count == hex.length) throw malformed("Too many towers in checkpoint.");
+            hex[count++] = hexNumber();
+        }
+        if (count < AppConfig.TOWERS_AMOUNT_MINIMUM + 1) throw malformed("Too few towers in checkpoint.");
+        long[] checkpoint = JournalRecord.checkpoint(Arrays.copyOf(hex, count - 1), moves, position);
+        return (int) checkpoint[checkpoint.length - 1] == (int) hex[count - 1] ? checkpoint : null;
+    }
+
+    /* finds the next whole line, setting its bounds without a line break; false if there is none */
+    private boolean nextLine() {
+        while (true) {
+            int limit = map.limit(), i = next;
+            while (i < limit && map.get(i) != '\n') i++;
+            if (i < limit) {
+                pos = next;
+                end = i > pos && map.get(i - 1) == '\r' ? i - 1 : i;
+                next = i + 1;
+                return true;
+            }
+            if (base + limit >= size) return false; // a last line without its line break is torn
+            if (next == 0) throw new MalformedJournalException(base, "Line too long.");
+            map(base + next);
+        }
+    }
+
+    private void map(final long position) {
+        try {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(window, size - position));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map journal", e);
+        }
+        base = position;
+        next = 0;
+    }
+
+    /* a decimal number up to a maximum, after any spaces, ending the line or followed by a space */
+    private long number(final long maximum) {
+        skipSpaces();
+        if (pos == end || !isDigit(map.get(pos))) throw malformed("Expected a number.");
+        int start = pos;
+        long value = 0;
+        while (pos < end && isDigit(map.get(pos))) {
+            int digit = map.get(pos++) - '0';
+            if (value > (maximum - digit) / 10) {
+                pos = start;
+                throw malformed("Number out of range.");
+            }
+            value = value * 10 + digit;
+        }
+        separator();
+        return value;
+    }
+
+    /* a hexadecimal number of up to 64 bits, ending the line or followed by a space */
+    private long hexNumber() {
+        int start = pos;
+        long value = 0;
+        for (int digit; pos < end && (digit = Character.digit(map.get(pos), 16)) >= 0; pos++) {
+            if (pos - start == Long.SIZE / 4) throw malformed("Hexadecimal number out of range.");
+            value = value << 4 | digit;
+        }
+        if (pos == start) throw malformed("Expected a hexadecimal number.");
+        separator();
+        return value;
+    }
+
+    private void separator() {
+        if (pos < end && map.get(pos) != ' ') throw malformed("Unexpected character " + describe(map.get(pos)) + ".");
+    }
+
+    private void endOfLine() {
+        skipSpaces();
+        if (pos < end) throw malformed("Unexpected character " + describe(map.get(pos)) + ".");
+    }
+
+    private void skipSpaces() {
+        while (pos < end && map.get(pos) == ' ') pos++;
+    }
+
+    private static boolean isDigit(final byte b) { return b >= '0' && b <= '9'; }
+
+    private static String describe(final byte b) {
+        return b >= ' ' && b < 0x7F ? "'" + (char) b + "'" : String.format("0x%02X", b & 0xFF);
+    }
+
+    private MalformedJournalException malformed(final String errorMsg) {
+        return new MalformedJournalException(base + pos, errorMsg);
+    }
+}
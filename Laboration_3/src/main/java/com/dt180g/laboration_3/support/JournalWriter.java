@@ -0,0 +1,315 @@
+package com.dt180g.laboration_3.support;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only writer of a move journal file, in any {@link JournalFormat}. Entries are encoded
+ * straight into a buffer and written through a {@link FileChannel} in group commits: once a given
+ * amount of entries is pending, the buffer is written in one system call, and forced to storage
+ * if the {@link SyncPolicy} says so. A packed journal also writes its unfinished byte on every
+ * commit, and writes it again once finished by the next one.
+ *
+ * Not thread-safe; a journal is written by the thread driving its game.
+ *
+ * @author Muntaser Ibrahim
+ */
+final class JournalWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final JournalFormat format;
+    private final int groupSize;
+    private final SyncPolicy sync;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long position;
+    private int pending = 0;
+    private boolean headed;
+    private PackedMoves.Encoder encoder;
+    private long[] checkpoint;
+    private int checkpointWords;
+
+    /**
+     * Opens a journal file.
+     *
+     * @param file      the journal file.
+     * @param format    format of the entries.
+     * @param groupSize amount of entries per group commit, 1 writing every entry at once.
+     * @param sync      when to force writes to storage.
+     * @param append    true to continue an existing journal, false to replace it. An entry torn at
+     *                  the end of the journal, by a crash during its write, is cut off.
+     * @throws IOException if the file cannot be opened.
+     */
+    JournalWriter(Path file, JournalFormat format, int groupSize, SyncPolicy sync, boolean append) throws IOException {
+        this.channel = append
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        this.format = format;
+        this.groupSize = Math.max(1, groupSize);
+        this.sync = sync;
+        this.position = channel.size();
+        if (position > 0) recover();
+        this.headed = position > (format == JournalFormat.TEXT ? 0 : JournalRecord.SIZE);
+        if (format != JournalFormat.TEXT && position == 0) {
+            buffer.putLong(format == JournalFormat.BINARY ? JournalRecord.MAGIC : PackedMoves.MAGIC);
+            commit();
+        }
+    }
+
+    /* cuts the journal after its last whole entry, and continues the unfinished byte of a packed one */
+    private void recover() throws IOException {
+        long end = position;
+        switch (format) {
+            case TEXT -> {
+                ByteBuffer tail = ByteBuffer.allocate(BUFFER_SIZE);
+                end = -1;
+                for (long from = position; end < 0 && from > 0; ) {
+                    int length = (int) Math.min(from, BUFFER_SIZE);
+                    from -= length;
+                    tail.clear().limit(length);
+                    while (tail.hasRemaining() && channel.read(tail, from + tail.position()) >= 0) { }
+                    int i = length;
+                    while (i > 0 && tail.get(i - 1) != '\n') i--;
+                    if (i > 0) end = from + i;
+                }
+                end = Math.max(0, end);
+            }
+            case BINARY -> {
+                long records = Math.max(0, position - JournalRecord.SIZE) / JournalRecord.SIZE;
+                end = JournalRecord.SIZE * (records + 1);
+                // a checkpoint whose words do not all fit before the end is torn
+                int last = (int) Math.min(records - 1, AppConfig.TOWERS_AMOUNT_MAXIMUM + 3);
+                ByteBuffer word = ByteBuffer.allocate(JournalRecord.SIZE);
+                for (int back = 0; back < last; back++) {
+                    long at = end - (back + 1) * JournalRecord.SIZE;
+                    word.clear();
+                    while (word.hasRemaining() && channel.read(word, at + word.position()) >= 0) { }
+                    int type = JournalRecord.type(word.getLong(0));
+                    if (type == JournalRecord.CHECKPOINT_END) break;
+                    if (type == JournalRecord.CHECKPOINT && JournalRecord.checkpointLength(word.getLong(0)) > back + 1) {
+                        end = at;
+                        break;
+                    }
+                }
+                if (position < JournalRecord.SIZE) end = 0;
+            }
+            case PACKED -> {
+                if (position < 2 * JournalRecord.SIZE) {
+                    end = position < JournalRecord.SIZE ? 0 : JournalRecord.SIZE;
+                    break;
+                }
+                ByteBuffer word = ByteBuffer.allocate(JournalRecord.SIZE);
+                while (word.hasRemaining() && channel.read(word, JournalRecord.SIZE + word.position()) >= 0) { }
+                int towers = JournalRecord.towers(word.getLong(0));
+                encoder = new PackedMoves.Encoder(towers);
+                long bits = PackedMoves.end(channel, towers, position);
+                end = bits / 8;
+                if (bits % 8 != 0) {
+                    word.clear().limit(1);
+                    channel.read(word, end);
+                    encoder.resume(word.get(0) >>> (8 - bits % 8), (int) (bits % 8));
+                }
+            }
+        }
+        if (end < position) {
+            channel.truncate(end);
+            position = end;
+        }
+    }
+
+    /** Writes the header of a game. */
+    void header(int discs, int towers) {
+        if (format == JournalFormat.PACKED) {
+            if (headed) throw new IllegalStateException("A packed journal holds a single game.");
+            encoder = new PackedMoves.Encoder(towers);
+        }
+        if (format != JournalFormat.TEXT) {
+            reserve(JournalRecord.SIZE);
+            buffer.putLong(JournalRecord.header(discs, towers));
+            endEntry();
+            return;
+        }
+        reserve(24);
+        putNumber(discs);
+        if (towers != AppConfig.TOWERS_AMOUNT) {
+            buffer.put((byte) ' ');
+            putNumber(towers);
+        }
+        buffer.put(NEWLINE);
+        endEntry();
+    }
+
+    /** Writes a move between two towers (1-based). */
+    void move(int from, int to) {
+        if (format != JournalFormat.TEXT) {
+            record(JournalRecord.move(from, to));
+            return;
+        }
+        reserve(24);
+        putNumber(from);
+        buffer.put((byte) ' ');
+        putNumber(to);
+        buffer.put(NEWLINE);
+        endEntry();
+    }
+
+    /** Writes undoing an amount of moves. */
+    void undo(long moves) {
+        if (format != JournalFormat.TEXT) record(JournalRecord.undo(moves));
+        else symbol(AppConfig.LOG_UNDO_SYMBOL, moves);
+    }
+
+    /** Writes redoing an amount of moves. */
+    void redo(long moves) {
+        if (format != JournalFormat.TEXT) record(JournalRecord.redo(moves));
+        else symbol(AppConfig.LOG_REDO_SYMBOL, moves);
+    }
+
+    /**
+     * Writes a checkpoint of the game.
+     *
+     * @param words the words of the checkpoint, see {@link JournalRecord#checkpoint(long[], long, long)}.
+     */
+    void checkpoint(long[] words) {
+        switch (format) {
+            case TEXT -> text(JournalRecord.formatCheckpoint(words));
+            case BINARY -> {
+                reserve(words.length * JournalRecord.SIZE);
+                for (long word : words) buffer.putLong(word);
+                endEntry();
+            }
+            case PACKED -> {
+                if (encoder == null) throw new IllegalStateException("A packed journal needs its header first.");
+                reserve(words.length * JournalRecord.SIZE + 2);
+                encoder.checkpoint(words, buffer);
+                endEntry();
+            }
+        }
+    }
+
+    /**
+     * Writes the entry of a {@link JournalRecord}. The words of a checkpoint are collected
+     * until its end record, and written together.
+     */
+    void write(long record) {
+        if (checkpoint != null) {
+            checkpoint[checkpointWords++] = record;
+            if (checkpointWords == checkpoint.length) {
+                long[] words = checkpoint;
+                checkpoint = null;
+                checkpoint(words);
+            }
+            return;
+        }
+        switch (JournalRecord.type(record)) {
+            case JournalRecord.CHECKPOINT -> {
+                checkpoint = new long[JournalRecord.checkpointLength(record)];
+                checkpoint[0] = record;
+                checkpointWords = 1;
+            }
+            case JournalRecord.HEADER -> header(JournalRecord.discs(record), JournalRecord.towers(record));
+            case JournalRecord.MOVE -> move(JournalRecord.from(record), JournalRecord.to(record));
+            case JournalRecord.UNDO -> undo(JournalRecord.amount(record));
+            case JournalRecord.REDO -> redo(JournalRecord.amount(record));
+            default -> throw new IllegalArgumentException("Unknown journal record: " + Long.toHexString(record));
+        }
+    }
+
+    /**
+     * Writes a line of text as is; binary journals store the equivalent record instead, reading the
+     * first line of a journal as its header.
+     */
+    void text(String line) {
+        if (format != JournalFormat.TEXT) {
+            long[] words = headed ? JournalRecord.parseCheckpoint(line) : null;
+            if (words != null) checkpoint(words);
+            else write(headed ? JournalRecord.parseEntry(line) : JournalRecord.parseHeader(line));
+            return;
+        }
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        reserve(bytes.length + NEWLINE.length);
+        buffer.put(bytes).put(NEWLINE);
+        endEntry();
+    }
+
+    /** @return format of the entries. */
+    JournalFormat getFormat() { return format; }
+
+    /** Writes all pending entries to the file. */
+    void flush() {
+        if (pending > 0 || buffer.position() > 0) commit();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (encoder != null && encoder.pending() > 0) {
+                reserve(2);
+                encoder.align(buffer);
+            }
+            flush();
+            if (sync == SyncPolicy.ON_CLOSE) channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close journal", e);
+        }
+    }
+
+    private void symbol(String symbol, long moves) {
+        reserve(32);
+        buffer.put((byte) symbol.charAt(0));
+        if (moves != 1) {
+            buffer.put((byte) ' ');
+            putNumber(moves);
+        }
+        buffer.put(NEWLINE);
+        endEntry();
+    }
+
+    private void record(long record) {
+        reserve(JournalRecord.SIZE + 2);
+        if (format == JournalFormat.BINARY) buffer.putLong(record);
+        else if (encoder != null) encoder.record(record, buffer);
+        else throw new IllegalStateException("A packed journal needs its header first.");
+        endEntry();
+    }
+
+    private void endEntry() {
+        headed = true;
+        if (++pending >= groupSize) commit();
+    }
+
+    /* writes the digits of a non-negative number without creating a string */
+    private void putNumber(long value) {
+        if (value >= 10) putNumber(value / 10);
+        buffer.put((byte) ('0' + value % 10));
+    }
+
+    private void reserve(int bytes) {
+        if (buffer.remaining() < bytes) commit();
+        if (buffer.remaining() < bytes) throw new IllegalArgumentException("Journal entry too long.");
+    }
+
+    private void commit() {
+        try {
+            buffer.flip();
+            while (buffer.hasRemaining()) position += channel.write(buffer, position);
+            buffer.clear();
+            if (encoder != null && encoder.pending() > 0) {
+                ByteBuffer partial = ByteBuffer.wrap(new byte[]{encoder.partial()});
+                while (partial.hasRemaining()) channel.write(partial, position);
+            }
+            pending = 0;
+            if (sync == SyncPolicy.EVERY_COMMIT) channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write journal", e);
+        }
+    }
+}
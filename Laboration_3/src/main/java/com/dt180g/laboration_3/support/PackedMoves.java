@@ -0,0 +1,405 @@
+package com.dt180g.laboration_3.support;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Utility class for the packed move journal, which spends a few bits per move. A packed journal
+ * starts with {@link #MAGIC} and the {@link JournalRecord#header(int, int) header record}, followed
+ * by a stream of symbols, most significant bit first. With k towers, a symbol is {@link #width(int)}
+ * bits wide, three bits for the six moves between three towers:
+ *
+ * <ul>
+ *   <li>0 to k(k-1)-1: a move, numbered by source tower, then destination tower.</li>
+ *   <li>k(k-1): undoing a single move.</li>
+ *   <li>all bits set: an escape, followed by two bits telling its kind. An undo or redo of any
+ *       amount follows with six bits telling the bit length of the amount, then the amount.
+ *       Alignment skips the bits up to the next byte, and the end stops the stream. An undo of
+ *       bit length zero is a checkpoint instead: six bits telling its amount of words, the words
+ *       and its checksum, see {@link JournalRecord#checkpoint(long[], long, long)}.</li>
+ * </ul>
+ *
+ * A stream is padded with set bits, which read as an end, or as an escape cut short. A closed
+ * journal ends in an alignment instead, so that it may be appended to.
+ *
+ * @author Muntaser Ibrahim
+ */
+public final class PackedMoves {
+    private PackedMoves() { throw new IllegalStateException("Utility class"); }
+
+    /** "HNJP" followed by the format version. */
+    public static final long MAGIC = 0x484E4A50_00000001L;
+
+    private static final int UNDO = 0, REDO = 1, ALIGN = 2, END = 3;
+    /* bytes of a journal file read at once when searching its end */
+    private static final int WINDOW = 1 << 16;
+
+    /** @return bits per symbol of a journal with the given amount of towers. */
+    public static int width(final int towers) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(towers * (towers - 1) + 1);
+    }
+
+    /**
+     * Packs moves into a whole journal, in one pass.
+     *
+     * @param discs  amount of discs of the game.
+     * @param towers amount of towers of the game.
+     * @param from   source tower (1-based) per move.
+     * @param to     destination tower (1-based) per move.
+     * @return the bytes of the journal, ending aligned.
+     */
+    public static byte[] encode(final int discs, final int towers, final int[] from, final int[] to) {
+        ByteBuffer out = ByteBuffer.allocate(2 * JournalRecord.SIZE + (from.length * width(towers) + 7) / 8 + 2);
+        out.putLong(MAGIC).putLong(JournalRecord.header(discs, towers));
+        Encoder encoder = new Encoder(towers);
+        for (int i = 0; i < from.length; i++) encoder.move(from[i], to[i], out);
+        encoder.align(out);
+        return out.position() == out.capacity() ? out.array() : Arrays.copyOf(out.array(), out.position());
+    }
+
+    /**
+     * Unpacks the moves of a whole journal.
+     *
+     * @param journal bytes of a journal starting with {@link #MAGIC}.
+     * @return the records of the journal, starting with its header.
+     * @throws IllegalArgumentException if the bytes are no packed journal.
+     */
+    public static long[] decode(final byte[] journal) {
+        ByteBuffer in = ByteBuffer.wrap(journal);
+        if (in.remaining() < 2 * JournalRecord.SIZE || in.getLong() != MAGIC)
+            throw new IllegalArgumentException("Not a packed journal.");
+        long header = in.getLong();
+        Decoder decoder = new Decoder(JournalRecord.towers(header), in);
+        long[] records = new long[Math.max(16, journal.length * 8 / decoder.width)];
+        records[0] = header;
+        int n = 1;
+        for (int read; (read = decoder.next(records, n, records.length - n)) > 0; ) {
+            n += read;
+            if (n == records.length) records = Arrays.copyOf(records, n * 2);
+        }
+        return Arrays.copyOf(records, n);
+    }
+
+    /**
+     * Finds the end of the last whole entry of a packed journal file, for files of any size. Only
+     * the tail after the latest whole checkpoint is unpacked, which is found by searching the file
+     * backwards for the bits starting a checkpoint that passes its checksum.
+     *
+     * @param channel the journal file.
+     * @param towers  amount of towers of the game.
+     * @param size    amount of bytes of the file to consider.
+     * @return bit offset in the file of the end of the last whole entry.
+     * @throws IOException if the file cannot be read.
+     */
+    static long end(final FileChannel channel, final int towers, final long size) throws IOException {
+        return end(channel, towers, size, WINDOW);
+    }
+
+    /** Finds the end of the last whole entry, reading windows of the given amount of bytes. */
+    static long end(final FileChannel channel, final int towers, final long size, final int window) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(window);
+        long[] records = new long[1 << 12];
+        for (long bit = lastCheckpoint(channel, towers, size, bytes); ; ) {
+            long first = bit >>> 3;
+            read(channel, bytes, first, size);
+            Decoder decoder = new Decoder(towers, bytes, (int) (bit & 7));
+            while (decoder.next(records, 0, records.length) > 0) { }
+            long end = first * 8 + decoder.getEnd();
+            // an entry cut short by the window is unpacked again by the next one
+            if (first + bytes.limit() >= size || end == bit) return end;
+            bit = end;
+        }
+    }
+
+    /* bit offset of the latest whole checkpoint of a journal file, or of its first entry if none */
+    private static long lastCheckpoint(final FileChannel channel, final int towers, final long size,
+                                       final ByteBuffer bytes) throws IOException {
+        // a checkpoint starts with an escape, an undo of bit length zero and its amount of words
+        int width = width(towers), length = width + 14;
+        long marker = (long) ((1 << width) - 1) << 14 | towers + 2;
+        long[] words = new long[towers + 4];
+        ByteBuffer checkpoint = ByteBuffer.allocate(words.length * JournalRecord.SIZE + 2);
+        long origin = 2 * JournalRecord.SIZE;
+        for (long high = size; high - origin > (length + 7) / 8; ) {
+            long low = Math.max(origin, high - bytes.capacity());
+            read(channel, bytes, low, high);
+            for (long bit = (long) bytes.limit() * 8 - length; bit >= 0; bit--) {
+                if (bits(bytes, bit, length) != marker) continue;
+                long at = low * 8 + bit;
+                read(channel, checkpoint, at >>> 3, size);
+                Decoder decoder = new Decoder(towers, checkpoint, (int) (at & 7));
+                int n = 0;
+                for (int read; n < words.length && (read = decoder.next(words, n, words.length - n)) > 0; ) n += read;
+                if (JournalRecord.isCheckpoint(words, 0, n)) return at;
+            }
+            if (low == origin) break;
+            high = low + (length + 7) / 8 + 1; // a marker across the windows is found by the next one
+        }
+        return origin * 8;
+    }
+
+    /* reads the bytes of a file from a position up to a limit, at most as many as the buffer holds */
+    private static void read(final FileChannel channel, final ByteBuffer bytes, final long from, final long to)
+            throws IOException {
+        bytes.clear().limit((int) Math.min(bytes.capacity(), to - from));
+        while (bytes.hasRemaining() && channel.read(bytes, from + bytes.position()) >= 0) { }
+        bytes.flip();
+    }
+
+    /* up to 50 bits of a buffer from a bit offset on */
+    private static long bits(final ByteBuffer bytes, final long bit, final int length) {
+        int first = (int) (bit >>> 3), skip = (int) (bit & 7), amount = (skip + length + 7) >>> 3;
+        long value = 0;
+        for (int i = 0; i < amount; i++) value = value << 8 | bytes.get(first + i) & 0xFF;
+        return value >>> (amount * 8 - skip - length) & (1L << length) - 1;
+    }
+
+    /**
+     * Packs records into bytes, keeping the bits of an unfinished byte until more follow.
+     */
+    static final class Encoder {
+        private final int towers;
+        private final int width;
+        private final int undo;
+        private final int escape;
+        private long bits = 0;
+        private int count = 0;
+
+        /** @param towers amount of towers of the game. */
+        Encoder(final int towers) {
+            this.towers = towers;
+            this.width = width(towers);
+            this.undo = towers * (towers - 1);
+            this.escape = (1 << width) - 1;
+        }
+
+        /** Packs a move between two towers (1-based). */
+        void move(final int from, final int to, final ByteBuffer out) {
+            if (from < 1 || from > towers || to < 1 || to > towers || from == to)
+                throw new IllegalArgumentException("Move cannot be packed: " + from + " " + to);
+            put((from - 1) * (towers - 1) + (to < from ? to - 1 : to - 2), width, out);
+        }
+
+        /** Packs a journal record other than a header. */
+        void record(final long record, final ByteBuffer out) {
+            switch (JournalRecord.type(record)) {
+                case JournalRecord.MOVE -> move(JournalRecord.from(record), JournalRecord.to(record), out);
+                case JournalRecord.UNDO -> amount(UNDO, JournalRecord.amount(record), out);
+                case JournalRecord.REDO -> amount(REDO, JournalRecord.amount(record), out);
+                default -> throw new IllegalArgumentException("Record cannot be packed: " + Long.toHexString(record));
+            }
+        }
+
+        /* an undo of bit length zero would read as a checkpoint */
+        private void amount(final int kind, final long amount, final ByteBuffer out) {
+            if (amount < 1) throw new IllegalArgumentException("Amount cannot be packed: " + amount);
+            if (kind == UNDO && amount == 1) {
+                put(undo, width, out);
+                return;
+            }
+            int length = Long.SIZE - Long.numberOfLeadingZeros(amount);
+            put(escape << 2 | kind, width + 2, out);
+            put(length, 6, out);
+            if (length > 32) put((int) (amount >>> 32), length - 32, out);
+            put((int) amount, Math.min(length, 32), out);
+        }
+
+        /** Packs the words of a checkpoint. */
+        void checkpoint(final long[] words, final ByteBuffer out) {
+            int n = words.length - 2;
+            put(escape << 2 | UNDO, width + 2, out);
+            put(0, 6, out);
+            put(n, 6, out);
+            for (int i = 1; i <= n; i++) {
+                put((int) (words[i] >>> 32), 32, out);
+                put((int) words[i], 32, out);
+            }
+            put((int) words[n + 1], 32, out);
+        }
+
+        /** Ends the stream on a byte, so that more symbols may be appended after closing. */
+        void align(final ByteBuffer out) {
+            if (count == 0) return;
+            put(escape << 2 | ALIGN, width + 2, out);
+            if (count > 0) put(-1, 8 - count, out);
+        }
+
+        /**
+         * Continues a stream whose last byte was left unfinished.
+         *
+         * @param bits   the bits of the unfinished byte, in its low bits.
+         * @param length amount of bits, below eight.
+         */
+        void resume(final int bits, final int length) {
+            this.bits = bits & (1L << length) - 1;
+            this.count = length;
+        }
+
+        /** @return amount of bits packed but not yet written, below eight. */
+        int pending() { return count; }
+
+        /** @return the unfinished byte, padded with set bits. */
+        byte partial() { return (byte) (bits << (8 - count) | (1 << (8 - count)) - 1); }
+
+        /* appends up to 32 bits, writing every finished byte */
+        private void put(final int value, final int length, final ByteBuffer out) {
+            bits = bits << length | value & (1L << length) - 1;
+            count += length;
+            while (count >= 8) {
+                count -= 8;
+                out.put((byte) (bits >>> count));
+            }
+        }
+    }
+
+    /**
+     * Unpacks records from bytes positioned after the header of a journal, or at any byte a stream
+     * was appended at.
+     */
+    public static final class Decoder implements RecordSource {
+        private final ByteBuffer in;
+        private final int width;
+        private final int escape;
+        private final long[] table;
+        private final int start;
+        private long end = 0;
+        private long bits = 0;
+        private int count = 0;
+        private boolean ended = false;
+        private long[] words;
+        private int word;
+
+        /**
+         * @param towers amount of towers of the game.
+         * @param in     the bytes to unpack; read from its position on.
+         */
+        public Decoder(final int towers, final ByteBuffer in) {
+            this(towers, in, 0);
+        }
+
+        /**
+         * @param towers amount of towers of the game.
+         * @param in     the bytes to unpack; read from its position on.
+         * @param skip   amount of bits of the first byte to skip, below eight.
+         */
+        public Decoder(final int towers, final ByteBuffer in, final int skip) {
+            this.in = in;
+            this.start = in.position();
+            this.width = width(towers);
+            this.escape = (1 << width) - 1;
+            this.table = new long[escape];
+            int symbol = 0;
+            for (int from = 1; from <= towers; from++)
+                for (int to = 1; to <= towers; to++)
+                    if (from != to) table[symbol++] = JournalRecord.move(from, to);
+            table[symbol] = JournalRecord.undo(1);
+            if (skip > 0 && fill(skip)) {
+                take(skip);
+                mark();
+            }
+        }
+
+        /**
+         * Unpacks the next records.
+         *
+         * @throws IllegalArgumentException if a symbol is unknown.
+         */
+        @Override
+        public int next(final long[] records, final int offset, final int length) {
+            int n = 0;
+            while (n < length && words != null) {
+                records[offset + n++] = words[word++];
+                if (word == words.length) words = null;
+            }
+            while (n < length && !ended) {
+                if (!fill(width)) break;
+                int symbol = (int) take(width);
+                if (symbol < escape) {
+                    long record = table[symbol];
+                    if (record == 0) throw new IllegalArgumentException("Unknown packed symbol: " + symbol);
+                    records[offset + n++] = record;
+                    mark();
+                    continue;
+                }
+                if (!fill(2)) break;
+                int kind = (int) take(2);
+                if (kind == ALIGN) {
+                    count -= count % 8;
+                    mark();
+                } else if (kind == END || !fill(6)) {
+                    break;
+                } else {
+                    int bitLength = (int) take(6), high = Math.max(0, bitLength - 32);
+                    if (bitLength == 0 && kind == UNDO) {
+                        if (!checkpoint()) break;
+                        mark();
+                        while (n < length && words != null) {
+                            records[offset + n++] = words[word++];
+                            if (word == words.length) words = null;
+                        }
+                        continue;
+                    }
+                    if (!fill(high)) break;
+                    long amount = take(high) << 32;
+                    if (!fill(bitLength - high)) break;
+                    amount |= take(bitLength - high);
+                    records[offset + n++] = kind == UNDO ? JournalRecord.undo(amount) : JournalRecord.redo(amount);
+                    mark();
+                }
+            }
+            if (n < length) ended = true;
+            return n;
+        }
+
+        /**
+         * @return amount of bits from the start position to the end of the last whole entry
+         *         unpacked, leaving out padding and an entry cut short.
+         */
+        public long getEnd() { return end; }
+
+        /** @return bit offset in the buffer of the end of the last whole entry unpacked. */
+        @Override
+        public long getPosition() { return (long) start * 8 + end; }
+
+        private void mark() { end = (long) (in.position() - start) * 8 - count; }
+
+        /* unpacks the words of a checkpoint to hand out, false if cut short */
+        private boolean checkpoint() {
+            if (!fill(6)) return false;
+            int n = (int) take(6);
+            long[] unpacked = new long[n + 2];
+            unpacked[0] = (long) JournalRecord.CHECKPOINT << 60 | n;
+            for (int i = 1; i <= n; i++) {
+                if (!fill(32)) return false;
+                long high = take(32);
+                if (!fill(32)) return false;
+                unpacked[i] = high << 32 | take(32);
+            }
+            if (!fill(32)) return false;
+            unpacked[n + 1] = (long) JournalRecord.CHECKPOINT_END << 60 | (long) n << 32 | take(32);
+            words = unpacked;
+            word = 0;
+            return true;
+        }
+
+        /* loads whole bytes until at least the given amount of bits (up to 32) is available */
+        private boolean fill(final int length) {
+            while (count < length) {
+                if (!in.hasRemaining()) {
+                    ended = true;
+                    return false;
+                }
+                bits = bits << 8 | in.get() & 0xFF;
+                count += 8;
+            }
+            return true;
+        }
+
+        private long take(final int length) {
+            count -= length;
+            return bits >>> count & (1L << length) - 1;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.dt180g.laboration_3.support;
+
+/**
+ * A stream of {@link JournalRecord}s, read in bulk into a caller's array so that no object is
+ * created per entry. The words of a checkpoint may be split over several calls.
+ *
+ * @author Muntaser Ibrahim
+ */
+@FunctionalInterface
+public interface RecordSource {
+
+    /**
+     * Reads the next records.
+     *
+     * @param records array to store the records in.
+     * @param offset  index of the first record to store.
+     * @param length  most records to store.
+     * @return amount of records stored, 0 once the stream ended.
+     */
+    int next(long[] records, int offset, int length);
+
+    /**
+     * @return position in the log of the next entry, in bytes, or in bits for a packed log, once
+     *         the records read so far end on a whole entry.
+     * @throws UnsupportedOperationException if the source does not tell its position.
+     */
+    default long getPosition() {
+        throw new UnsupportedOperationException("The source does not tell its position.");
+    }
+}
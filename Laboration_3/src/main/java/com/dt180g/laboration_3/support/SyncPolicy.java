@@ -0,0 +1,16 @@
+package com.dt180g.laboration_3.support;
+
+/**
+ * When the move journal forces its writes to the storage device, trading durability on power
+ * loss against throughput. Writes reach the operating system on every group commit regardless.
+ *
+ * @author Muntaser Ibrahim
+ */
+public enum SyncPolicy {
+    /** Leaves flushing to storage to the operating system. */
+    NEVER,
+    /** Forces the file once it is closed. */
+    ON_CLOSE,
+    /** Forces the file after every group commit. */
+    EVERY_COMMIT
+}
@@ -19,6 +19,17 @@ public class InvalidMoveException extends RuntimeException {
      */
     public InvalidMoveException(final String errorMsg) {
         // Call the super constructor with the formatted error message
-        super(String.format("%s%s%s", AppConfig.COLOR_ERROR_MSG, errorMsg, AppConfig.COLOR_RESET));
+        super(format(errorMsg));
+    }
+
+    /**
+     * Formats an error message the way the exception does, for showing an invalid move that was
+     * reported by result code, without creating an exception.
+     *
+     * @param errorMsg the error message to display
+     * @return the message in the error color
+     */
+    public static String format(final String errorMsg) {
+        return String.format("%s%s%s", AppConfig.COLOR_ERROR_MSG, errorMsg, AppConfig.COLOR_RESET);
     }
 }
@@ -0,0 +1,29 @@
+package com.dt180g.laboration_3.validation;
+
+/**
+ * An exception class used to indicate that a move journal holds an entry that cannot be parsed.
+ * It tells the byte offset of the offending byte in the journal file. This exception is an
+ * {@link IllegalArgumentException}, so callers restoring a game from a journal may handle it
+ * like any other invalid journal.
+ *
+ * @author Muntaser Ibrahim
+ */
+public class MalformedJournalException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final long offset;
+
+    /**
+     * Constructs a new MalformedJournalException for a byte of the journal.
+     *
+     * @param offset   byte offset in the journal file.
+     * @param errorMsg what is wrong at the offset.
+     */
+    public MalformedJournalException(final long offset, final String errorMsg) {
+        super(String.format("Malformed journal at byte %d: %s", offset, errorMsg));
+        this.offset = offset;
+    }
+
+    /** @return byte offset in the journal file of the offending byte. */
+    public long getOffset() { return offset; }
+}
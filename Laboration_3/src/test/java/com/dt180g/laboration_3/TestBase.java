@@ -29,7 +29,7 @@ public class TestBase {
                 () -> assertEquals(exp.get(0), engine.getTowerState(0)),
                 () -> assertEquals(exp.get(1), engine.getTowerState(1)),
                 () -> assertEquals(exp.get(2), engine.getTowerState(2)),
-                () -> assertEquals(exp.get(3), engine.getMoves()),
+                () -> assertEquals(exp.get(3).longValue(), engine.getMoves()),
                 () -> assertEquals(completed, engine.isGameCompleted())
         );
     }
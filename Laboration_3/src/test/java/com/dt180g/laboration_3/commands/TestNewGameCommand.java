@@ -8,6 +8,9 @@ import java.util.Arrays;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
 /**
  * This class provides JUnit test cases for {@link NewGameCommand}.
  * The class extends {@link TestBase} to inherit common functionality
@@ -65,21 +68,50 @@ public class TestNewGameCommand extends TestBase {
 
     /**
      * Test case for creating a new game with a disc amount
-     * lower than the minimum value defined in {@link AppConfig}.
+     * lower than the minimum value defined in {@link AppConfig}, which is rejected.
      */
     @Test
     public void testNewGameCommandLowerBounds() {
-        new NewGameCommand(AppConfig.DISC_AMOUNT_MINIMUM - 1).execute();
-        runAsserts(Arrays.asList(AppConfig.DISC_AMOUNT_MINIMUM, 0, 0, 0), false);
+        new NewGameCommand(3).execute();
+        assertThrows(IllegalArgumentException.class, () -> new NewGameCommand(AppConfig.DISC_AMOUNT_MINIMUM - 1));
+        runAsserts(Arrays.asList(3, 0, 0, 0), false);
     }
 
     /**
      * Test case for creating a new game with a disc amount
-     * greater than the maximum value defined in {@link AppConfig}.
+     * greater than the maximum value defined in {@link AppConfig}, which is rejected.
      */
     @Test
     public void testNewGameCommandUpperBounds() {
-        new NewGameCommand(AppConfig.DISC_AMOUNT_MAXIMUM + 1).execute();
-        runAsserts(Arrays.asList(AppConfig.DISC_AMOUNT_MAXIMUM, 0, 0, 0), false);
+        new NewGameCommand(3).execute();
+        assertThrows(IllegalArgumentException.class, () -> new NewGameCommand(AppConfig.DISC_AMOUNT_MAXIMUM + 1));
+        runAsserts(Arrays.asList(3, 0, 0, 0), false);
+    }
+
+    /**
+     * Test case for creating a new game with more towers than the default,
+     * where the game is only completed once all discs reach the last tower.
+     */
+    @Test
+    public void testNewGameCommandFourTowers() {
+        new NewGameCommand(2, 4).execute();
+        assertEquals(4, engine.getTowerAmount(), "Amount of towers needs to be 4.");
+        Stream.of("1 2", "1 4", "2 4")
+                .map(move -> move.split(" "))
+                .forEach(moveArr -> engine.performMove(Integer.parseInt(moveArr[0]), Integer.parseInt(moveArr[1]), true));
+        runAsserts(Arrays.asList(0, 0, 0, 3), true);
+        assertEquals(2, engine.getTowerState(3), "All discs need to be on the last tower.");
+    }
+
+    /**
+     * Test case for creating a new game with a tower amount
+     * outside the bounds defined in {@link AppConfig}, which is rejected.
+     */
+    @Test
+    public void testNewGameCommandTowerBounds() {
+        new NewGameCommand(2, 4).execute();
+        assertThrows(IllegalArgumentException.class, () -> new NewGameCommand(3, AppConfig.TOWERS_AMOUNT_MAXIMUM + 1));
+        assertThrows(IllegalArgumentException.class, () -> new NewGameCommand(3, AppConfig.TOWERS_AMOUNT_MINIMUM - 1));
+        assertEquals(4, engine.getTowerAmount(), "A rejected tower amount needs to leave the game as it was.");
     }
 }
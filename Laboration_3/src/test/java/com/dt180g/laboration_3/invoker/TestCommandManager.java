@@ -10,6 +10,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
+import java.util.List;
 import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -135,4 +136,27 @@ public class TestCommandManager extends TestBase {
         assertEquals(0, CommandManager.INSTANCE.getRedoAmount(),
                 "Amount of available redoes after performing a new move needs to be 0");
     }
+
+    @Test
+    public void testManagerBatchIsSingleEntry() {
+        List<MoveCommand> batch = super.moves.stream()
+                .map(move -> move.split(" "))
+                .map(tmp -> new MoveCommand(Integer.parseInt(tmp[0]), Integer.parseInt(tmp[1])))
+                .toList();
+        CommandManager.INSTANCE.executeCommands(batch);
+        super.runAsserts(Arrays.asList(0, 0, 3, movesAmount), true);
+        assertEquals(1, CommandManager.INSTANCE.getUndoAmount(), "A batch needs to be a single undo entry.");
+
+        CommandManager.INSTANCE.undoMove();
+        super.runAsserts(Arrays.asList(3, 0, 0, 0), false);
+        CommandManager.INSTANCE.redoMove();
+        super.runAsserts(Arrays.asList(0, 0, 3, movesAmount), true);
+    }
+
+    @Test
+    public void testManagerInvalidBatchIsRejected() {
+        CommandManager.INSTANCE.executeCommands(List.of(new MoveCommand(1, 3), new MoveCommand(1, 3)));
+        super.runAsserts(Arrays.asList(3, 0, 0, 0), false);
+        assertEquals(0, CommandManager.INSTANCE.getUndoAmount(), "An invalid batch needs to leave no history.");
+    }
 }
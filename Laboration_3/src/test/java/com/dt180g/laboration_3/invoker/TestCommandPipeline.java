@@ -0,0 +1,92 @@
+package com.dt180g.laboration_3.invoker;
+
+import com.dt180g.laboration_3.TestBase;
+import com.dt180g.laboration_3.commands.MoveCommand;
+import com.dt180g.laboration_3.receiver.MoveCode;
+import com.dt180g.laboration_3.solver.OptimalSolver;
+import com.dt180g.laboration_3.validation.InvalidMoveException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link CommandPipeline}.
+ */
+public class TestCommandPipeline extends TestBase {
+    /** Tests that a solution submitted through a small ring is applied in order. */
+    @Test
+    public void testSolutionThroughPipeline() {
+        GameSession session = new GameSession(10, 3);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (CommandPipeline pipeline = session.openPipeline(8)) {
+            new OptimalSolver(10).moves().forEach(code -> futures.add(pipeline.submit(
+                    new MoveCommand(session.getEngine(), session.getJournal(), MoveCode.from(code), MoveCode.to(code)))));
+        }
+        assertAll("Validate game played through the pipeline",
+                () -> assertTrue(futures.stream().allMatch(f -> f.isDone() && !f.isCompletedExceptionally())),
+                () -> assertTrue(session.getEngine().isGameCompleted()),
+                () -> assertEquals(1023, session.getManager().getUndoAmount()));
+    }
+
+    /** Tests that commands of many producers are all executed, each producer's in its own order. */
+    @Test
+    public void testManyProducers() throws InterruptedException {
+        int producers = 8, perProducer = 20_000;
+        int[] last = new int[producers];
+        int[] executed = {0};
+        boolean[] ordered = {true};
+        try (CommandPipeline pipeline = new GameSession(3, 3).openPipeline(64)) {
+            List<Thread> threads = IntStream.range(0, producers).mapToObj(p -> new Thread(() -> {
+                for (int i = 1; i <= perProducer; i++) {
+                    int n = i;
+                    pipeline.submit(() -> {
+                        // only ever run by the sequencer thread, so plain fields suffice
+                        if (last[p] != n - 1) ordered[0] = false;
+                        last[p] = n;
+                        executed[0]++;
+                    });
+                }
+            })).toList();
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) thread.join();
+        }
+        assertAll("Validate sequenced commands",
+                () -> assertEquals(producers * perProducer, executed[0]),
+                () -> assertTrue(ordered[0], "Commands of one producer need to run in submission order."));
+    }
+
+    /**
+     * Tests that invalid moves and errors fail their future without stopping the pipeline, and that
+     * a closed pipeline rejects commands.
+     */
+    @Test
+    public void testFailuresAndClosing() {
+        GameSession session = new GameSession(3, 3);
+        CommandPipeline pipeline = session.openPipeline(4);
+        CompletableFuture<Void> invalid = pipeline.submit(new MoveCommand(session.getEngine(), session.getJournal(), 2, 3));
+        CompletionException e = assertThrows(CompletionException.class, invalid::join);
+        assertInstanceOf(InvalidMoveException.class, e.getCause());
+        CompletableFuture<Void> failed = pipeline.submit(() -> { throw new AssertionError("broken command"); });
+        assertInstanceOf(AssertionError.class,
+                assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS)).getCause());
+        assertDoesNotThrow(() -> pipeline.submit(new MoveCommand(session.getEngine(), session.getJournal(), 1, 3))
+                .get(10, TimeUnit.SECONDS), "The sequencer needs to go on after an error.");
+
+        pipeline.close();
+        assertThrows(IllegalStateException.class, () -> pipeline.submit(() -> { }));
+        assertEquals(1, session.getManager().getUndoAmount(), "Failed commands need to leave no history.");
+    }
+}
@@ -0,0 +1,94 @@
+package com.dt180g.laboration_3.invoker;
+
+import com.dt180g.laboration_3.TestBase;
+import com.dt180g.laboration_3.receiver.MoveResult;
+import com.dt180g.laboration_3.support.JournalRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link GameSession}, validating that sessions are isolated
+ * from each other and from the default game.
+ */
+public class TestGameSession extends TestBase {
+    private void playMoves(GameSession session) {
+        super.moves.stream()
+                .map(move -> move.split(" "))
+                .forEach(tmp -> session.move(Integer.parseInt(tmp[0]), Integer.parseInt(tmp[1])));
+    }
+
+    /** Tests that moves in one session leave other sessions and the default game untouched. */
+    @Test
+    public void testSessionsAreIndependent() {
+        GameSession first = new GameSession(3, 3), second = new GameSession(3, 3);
+        assertNotSame(first.getEngine(), second.getEngine(), "Sessions need engines of their own.");
+
+        playMoves(first);
+        second.move(1, 3);
+        assertAll("Validate that session states are separate",
+                () -> assertTrue(first.getEngine().isGameCompleted()),
+                () -> assertEquals(7, first.getManager().getUndoAmount()),
+                () -> assertEquals(1, second.getEngine().getMoves()),
+                () -> assertEquals(1, second.getManager().getUndoAmount()),
+                () -> assertEquals(0, engine.getMoves()));
+    }
+
+    /** Tests that undo and redo only act on the history of their own session. */
+    @Test
+    public void testSessionUndoRedo() {
+        GameSession session = new GameSession(3, 3);
+        playMoves(session);
+        IntStream.range(0, 3).forEach(i -> session.undoMove());
+        session.redoMove();
+        assertAll("Validate session history",
+                () -> assertEquals(5, session.getEngine().getMoves()),
+                () -> assertEquals(5, session.getManager().getUndoAmount()),
+                () -> assertEquals(2, session.getManager().getRedoAmount()));
+    }
+
+    /** Tests that sessions driven from separate threads all reach the expected state. */
+    @Test
+    public void testSessionsOnParallelThreads() {
+        List<GameSession> sessions = IntStream.range(0, 64)
+                .mapToObj(i -> new GameSession(3, 3))
+                .toList();
+        sessions.parallelStream().forEach(this::playMoves);
+        assertTrue(sessions.stream().allMatch(s -> s.getEngine().isGameCompleted() && s.getEngine().getMoves() == 7),
+                "All sessions need to complete their game.");
+    }
+
+    /** Tests that moves tried in a session are recorded only when valid. */
+    @Test
+    public void testTryMove() {
+        GameSession session = new GameSession(3, 3);
+        assertAll("Validate tried moves",
+                () -> assertEquals(MoveResult.OK, session.tryMove(1, 3)),
+                () -> assertEquals(MoveResult.LARGER_ON_SMALLER, session.tryMove(1, 3)),
+                () -> assertEquals(1, session.getEngine().getMoves()),
+                () -> assertEquals(1, session.getManager().getUndoAmount()));
+    }
+
+    /**
+     * Tests that a replayed undo of a move that was left out as invalid stops at the start of the
+     * history, as undoing it in the game did, instead of failing the replay.
+     */
+    @Test
+    public void testReplayUndoStopsAtStart() {
+        GameSession session = new GameSession(3, 3);
+        long[] records = {JournalRecord.header(3, 3), JournalRecord.move(1, 3), JournalRecord.move(1, 3),
+                JournalRecord.undo(2), JournalRecord.move(1, 2)};
+        assertEquals(records.length, session.replay(records, 0, records.length));
+        assertAll("Validate the replayed game",
+                () -> assertEquals(1, session.getEngine().getMoves()),
+                () -> assertEquals(1, session.getManager().getUndoAmount()),
+                () -> assertEquals(0, session.getManager().getRedoAmount()),
+                () -> assertEquals(2, session.getEngine().getTowerState(0)));
+    }
+}
@@ -0,0 +1,141 @@
+package com.dt180g.laboration_3.invoker;
+
+import com.dt180g.laboration_3.TestBase;
+import com.dt180g.laboration_3.receiver.MoveCode;
+import com.dt180g.laboration_3.solver.OptimalSolver;
+import com.dt180g.laboration_3.support.AppConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link MoveHistory}, including its spill to a mapped file and jumps
+ * through its checkpoints.
+ */
+public class TestMoveHistory extends TestBase {
+    private static final long SMALL_LIMIT = 1000;
+    private static final int SMALL_INTERVAL = 100;
+    private long defaultLimit;
+    private int defaultInterval;
+
+    @BeforeEach
+    public void setUp() {
+        defaultLimit = AppConfig.getHistoryHeapLimit();
+        defaultInterval = AppConfig.getHistoryCheckpointInterval();
+        AppConfig.setHistoryHeapLimit(SMALL_LIMIT);
+        AppConfig.setHistoryCheckpointInterval(SMALL_INTERVAL);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        AppConfig.setHistoryHeapLimit(defaultLimit);
+        AppConfig.setHistoryCheckpointInterval(defaultInterval);
+    }
+
+    /** Tests that entries of one and several moves are undone and redone as recorded. */
+    @Test
+    public void testEntriesRoundTrip() {
+        MoveHistory history = new MoveHistory();
+        int[] single = {MoveCode.of(1, 3)}, batch = {MoveCode.of(1, 2), MoveCode.of(3, 2), MoveCode.of(1, 3)};
+        history.record(single);
+        history.record(batch);
+        assertArrayEquals(batch, history.undo());
+        assertArrayEquals(single, history.undo());
+        assertNull(history.undo(), "An empty undo history has nothing to undo.");
+        assertArrayEquals(single, history.redo());
+        assertAll("Validate history amounts",
+                () -> assertEquals(1, history.getUndoAmount()),
+                () -> assertEquals(1, history.getRedoAmount()),
+                () -> assertEquals(1, history.getCursor()),
+                () -> assertEquals(4, history.getSize()));
+
+        history.record(single);
+        assertEquals(0, history.getRedoAmount(), "Recording needs to drop the redo history.");
+        assertNull(history.redo());
+    }
+
+    /** Tests that a history past the heap limit spills to a file and keeps its entries. */
+    @Test
+    public void testSpillKeepsEntries() {
+        MoveHistory history = new MoveHistory();
+        int[] codes = new OptimalSolver(12).moves().toArray();
+        for (int code : codes) history.record(new int[]{code});
+        assertTrue(history.isSpilled(), "History past the heap limit needs to spill.");
+        for (int i = codes.length - 1; i >= 0; i--) assertEquals(codes[i], history.undo()[0]);
+        for (int code : codes) assertEquals(code, history.redo()[0]);
+
+        history.clear();
+        assertFalse(history.isSpilled(), "Clearing needs to release the spill file.");
+        assertEquals(0, history.getUndoAmount());
+    }
+
+    /** Tests that undo and redo of a session behave the same once its history spilled. */
+    @Test
+    public void testSessionWithSpilledHistory() {
+        GameSession session = new GameSession(12, 3);
+        new OptimalSolver(12).moves().forEach(code -> session.move(MoveCode.from(code), MoveCode.to(code)));
+        assertEquals(4095, session.getManager().getUndoAmount());
+
+        IntStream.range(0, 4095).forEach(i -> session.undoMove());
+        assertAll("Validate undone session",
+                () -> assertEquals(12, session.getEngine().getTowerState(0)),
+                () -> assertEquals(0, session.getEngine().getMoves()),
+                () -> assertEquals(4095, session.getManager().getRedoAmount()));
+
+        IntStream.range(0, 4095).forEach(i -> session.redoMove());
+        assertAll("Validate redone session",
+                () -> assertTrue(session.getEngine().isGameCompleted()),
+                () -> assertEquals(4095, session.getEngine().getMoves()));
+    }
+
+    /** Tests that jumps through the history reach the same states as the moves made. */
+    @Test
+    public void testJumpsMatchSolution() {
+        OptimalSolver solver = new OptimalSolver(12);
+        GameSession session = new GameSession(12, 3);
+        solver.moves().forEach(code -> session.move(MoveCode.from(code), MoveCode.to(code)));
+
+        for (long position : new long[]{1000, 999, 37, 0}) {
+            session.undoTo(position);
+            assertArrayEquals(solver.stateAt(position), session.getEngine().getState(), "State at " + position);
+            assertEquals(position, session.getEngine().getMoves());
+            assertEquals(4095 - position, session.getManager().getRedoAmount());
+        }
+        session.redoTo(2500);
+        assertArrayEquals(solver.stateAt(2500), session.getEngine().getState());
+        session.redoTo(4095);
+        assertAll("Validate session after jumps",
+                () -> assertTrue(session.getEngine().isGameCompleted()),
+                () -> assertEquals(4095, session.getManager().getUndoAmount()),
+                () -> assertEquals(0, session.getManager().getRedoAmount()));
+        assertThrows(IllegalArgumentException.class, () -> session.redoTo(4096));
+        assertThrows(IllegalArgumentException.class, () -> session.undoTo(4096));
+    }
+
+    /** Tests that jumps only stop at the ends of history entries. */
+    @Test
+    public void testJumpsRespectBatches() {
+        GameSession session = new GameSession(3, 3);
+        session.moves(new int[]{1, 1, 3}, new int[]{3, 2, 2});
+        session.move(1, 3);
+        assertThrows(IllegalArgumentException.class, () -> session.undoTo(2));
+        assertThrows(IllegalArgumentException.class, () -> session.moves(new int[0], new int[0]));
+        session.undoTo(0);
+        assertAll("Validate session undone past a batch",
+                () -> assertEquals(3, session.getEngine().getTowerState(0)),
+                () -> assertEquals(0, session.getManager().getUndoAmount()),
+                () -> assertEquals(2, session.getManager().getRedoAmount()));
+        session.redoTo(3);
+        assertEquals(2, session.getEngine().getTowerState(1), "Redoing the batch needs to restore it whole.");
+    }
+}
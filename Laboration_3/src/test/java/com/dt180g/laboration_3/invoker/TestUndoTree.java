@@ -0,0 +1,124 @@
+package com.dt180g.laboration_3.invoker;
+
+import com.dt180g.laboration_3.TestBase;
+import com.dt180g.laboration_3.receiver.HanoiEngine;
+import com.dt180g.laboration_3.receiver.MoveCode;
+import com.dt180g.laboration_3.support.AppConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the branching undo tree of {@link CommandManager}.
+ */
+public class TestUndoTree extends TestBase {
+    private int defaultInterval;
+
+    @BeforeEach
+    public void setUp() {
+        defaultInterval = AppConfig.getHistoryCheckpointInterval();
+        AppConfig.setHistoryCheckpointInterval(16);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        AppConfig.setHistoryCheckpointInterval(defaultInterval);
+    }
+
+    /** Tests that a move after undos keeps the undone moves as a branch to switch back to. */
+    @Test
+    public void testAlternativeLineIsKept() {
+        GameSession session = new GameSession(3, 3);
+        super.moves.stream().map(move -> move.split(" "))
+                .forEach(tmp -> session.move(Integer.parseInt(tmp[0]), Integer.parseInt(tmp[1])));
+        session.undoTo(3);
+        session.move(2, 3);
+        CommandManager manager = session.getManager();
+        assertAll("Validate the new branch",
+                () -> assertEquals(2, manager.getBranchAmount()),
+                () -> assertEquals(1, manager.getBranch()),
+                () -> assertEquals(0, manager.getBranchParent(1)),
+                () -> assertEquals(3, manager.getBranchFork(1)),
+                () -> assertEquals(7, manager.getBranchEnd(0)),
+                () -> assertEquals(4, manager.getBranchEnd(1)));
+
+        session.switchBranch(0);
+        assertTrue(session.getEngine().isGameCompleted(), "The first branch needs to be restored whole.");
+        assertEquals(7, session.getEngine().getMoves());
+
+        session.switchBranch(1);
+        assertAll("Validate the restored alternative",
+                () -> assertEquals(1, session.getEngine().getTowerState(0)),
+                () -> assertEquals(1, session.getEngine().getTowerState(1)),
+                () -> assertEquals(1, session.getEngine().getTowerState(2)),
+                () -> assertEquals(4, session.getEngine().getMoves()));
+        assertThrows(IllegalArgumentException.class, () -> session.switchBranch(2));
+    }
+
+    /** Tests random explorations against a model keeping the full line of every branch. */
+    @Test
+    public void testRandomExplorationMatchesModel() {
+        Random random = new Random(42);
+        GameSession session = new GameSession(6, 3);
+        List<List<Integer>> lines = new ArrayList<>(List.of(new ArrayList<>()));
+        int active = 0;
+        long cursor = 0;
+
+        for (int step = 0; step < 400; step++) {
+            int action = random.nextInt(10);
+            if (action < 6) {
+                int code = randomMove(session.getEngine(), random);
+                session.move(MoveCode.from(code), MoveCode.to(code));
+                List<Integer> line = lines.get(active);
+                if (cursor < line.size()) {
+                    line = new ArrayList<>(line.subList(0, (int) cursor));
+                    lines.add(line);
+                    active = lines.size() - 1;
+                }
+                line.add(code);
+                cursor++;
+            } else if (action < 8) {
+                cursor = random.nextInt((int) cursor + 1);
+                session.undoTo(cursor);
+            } else {
+                active = random.nextInt(lines.size());
+                cursor = lines.get(active).size();
+                session.switchBranch(active);
+            }
+            assertEquals(active, session.getManager().getBranch(), "Branch after step " + step);
+            assertArrayEquals(replay(lines.get(active), cursor), session.getEngine().getState(),
+                    "State after step " + step);
+        }
+        for (int branch = 0; branch < lines.size(); branch++) {
+            session.switchBranch(branch);
+            assertArrayEquals(replay(lines.get(branch), lines.get(branch).size()), session.getEngine().getState(),
+                    "State at the end of branch " + branch);
+        }
+    }
+
+    private static long[] replay(List<Integer> line, long moves) {
+        HanoiEngine engine = new HanoiEngine();
+        engine.resetGame(6);
+        for (int i = 0; i < moves; i++) engine.performMove(MoveCode.from(line.get(i)), MoveCode.to(line.get(i)), true);
+        return engine.getState();
+    }
+
+    private static int randomMove(HanoiEngine engine, Random random) {
+        long[] towers = engine.getState();
+        while (true) {
+            int from = random.nextInt(3), to = random.nextInt(3);
+            long f = towers[from], t = towers[to];
+            if (from != to && f != 0 && (t == 0 || (f & -f) < (t & -t))) return MoveCode.of(from + 1, to + 1);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.dt180g.laboration_3.issuers;
+
+import com.dt180g.laboration_3.invoker.GameSession;
+import com.dt180g.laboration_3.receiver.MoveCode;
+import com.dt180g.laboration_3.solver.OptimalSolver;
+import com.dt180g.laboration_3.support.AppConfig;
+import com.dt180g.laboration_3.support.HanoiLogger;
+import com.dt180g.laboration_3.support.JournalFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link ReplayController}.
+ */
+public class TestReplayController {
+    private boolean defaultUseLog;
+    private JournalFormat defaultFormat;
+    private int defaultCheckpointInterval, defaultIndexInterval;
+
+    @BeforeEach
+    public void setUp() {
+        defaultUseLog = AppConfig.shouldUseLog();
+        defaultFormat = AppConfig.getJournalFormat();
+        defaultCheckpointInterval = AppConfig.getJournalCheckpointInterval();
+        defaultIndexInterval = AppConfig.getReplayIndexInterval();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        AppConfig.setUseLog(defaultUseLog);
+        AppConfig.setJournalFormat(defaultFormat);
+        AppConfig.setJournalCheckpointInterval(defaultCheckpointInterval);
+        AppConfig.setReplayIndexInterval(defaultIndexInterval);
+    }
+
+    /**
+     * Tests that seeking to any frame, forwards or backwards, restores the game as it was after
+     * that entry of the log, also where an undo goes back past an indexed state, in every journal
+     * format, also forwards from an indexed state after a seek back to it, and that the index is
+     * kept next to the log and used again.
+     */
+    @Test
+    public void testSeekRestoresEveryFrame() throws IOException, URISyntaxException {
+        AppConfig.setJournalCheckpointInterval(20);
+        AppConfig.setReplayIndexInterval(7);
+        Path file = Path.of(AppConfig.getLogFilePath("Hanoi_seek_test.log"));
+        Path index = file.resolveSibling(file.getFileName() + ".idx");
+        try {
+            for (JournalFormat format : JournalFormat.values()) {
+                AppConfig.setJournalFormat(format);
+                AppConfig.setUseLog(true);
+                Files.deleteIfExists(index);
+                List<long[]> frames = record(file);
+                AppConfig.setUseLog(false);
+
+                GameSession session = new GameSession(3, 3);
+                try (ReplayController controller = new ReplayController(file, session)) {
+                    assertEquals(frames.size() - 1, controller.getLength(), format.name());
+                    for (long frame : new long[]{62, 61, 63, 100, 5, 0, frames.size() - 1, 64, 40, 41}) {
+                        controller.seek(frame);
+                        assertEquals(frame, controller.getPosition());
+                        assertArrayEquals(frames.get((int) frame), session.getEngine().getState(), format + " frame " + frame);
+                    }
+                }
+                assertTrue(Files.exists(index), format.name());
+                Files.setLastModifiedTime(index, FileTime.fromMillis(0));
+                try (ReplayController controller = new ReplayController(file, session)) {
+                    controller.seek(70);
+                    assertArrayEquals(frames.get(70), session.getEngine().getState(), format.name());
+                }
+                assertEquals(0, Files.getLastModifiedTime(index).toMillis(), format + " index needs to be used again.");
+                try (ReplayController controller = new ReplayController(file, session)) {
+                    controller.seek(100);
+                    controller.seek(58); // from the indexed state at 56, undone past by entry 61
+                    controller.seek(62);
+                    assertArrayEquals(frames.get(62), session.getEngine().getState(), format.name());
+                    controller.seek(61);
+                    controller.seek(64);
+                    assertArrayEquals(frames.get(64), session.getEngine().getState(), format.name());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(index);
+        }
+    }
+
+    /** Tests that playing renders a frame every frame skip, and no more than the throttle allows. */
+    @Test
+    public void testPlayRendersFrames() throws IOException, URISyntaxException {
+        AppConfig.setReplayIndexInterval(7);
+        Path file = Path.of(AppConfig.getLogFilePath("Hanoi_play_test.log"));
+        Path index = file.resolveSibling(file.getFileName() + ".idx");
+        try {
+            AppConfig.setUseLog(true);
+            List<long[]> frames = record(file);
+            AppConfig.setUseLog(false);
+
+            GameSession session = new GameSession(3, 3);
+            long[] rendered = new long[1];
+            try (ReplayController controller = new ReplayController(file, session)) {
+                controller.setRenderer(engine -> rendered[0]++);
+                controller.setFrameSkip(10);
+                long length = controller.getLength();
+                assertEquals((length + 9) / 10, controller.play(length));
+                assertArrayEquals(frames.get((int) length), session.getEngine().getState());
+                assertEquals(3, controller.rewind(25));
+                assertEquals(length - 25, controller.getPosition());
+                assertArrayEquals(frames.get((int) length - 25), session.getEngine().getState());
+
+                controller.setFrameSkip(1);
+                controller.setThrottle(60_000_000_000L);
+                assertEquals(2, controller.play(0), "Only the first frame and the target are due.");
+                assertEquals((length + 9) / 10 + 5, rendered[0]);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(index);
+        }
+    }
+
+    /** Tests that an index with an amount of states not matching its file is built again. */
+    @Test
+    public void testCorruptIndexIsRebuilt() throws IOException, URISyntaxException {
+        AppConfig.setReplayIndexInterval(7);
+        Path file = Path.of(AppConfig.getLogFilePath("Hanoi_index_test.log"));
+        Path index = file.resolveSibling(file.getFileName() + ".idx");
+        try {
+            AppConfig.setUseLog(true);
+            List<long[]> frames = record(file);
+            AppConfig.setUseLog(false);
+
+            GameSession session = new GameSession(3, 3);
+            new ReplayController(file, session).close();
+            long size = Files.size(index);
+            for (int amount : new int[]{Integer.MAX_VALUE, -1, 2}) {
+                try (FileChannel channel = FileChannel.open(index, StandardOpenOption.WRITE)) {
+                    channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, amount), 40);
+                }
+                try (ReplayController controller = new ReplayController(file, session)) {
+                    controller.seek(70);
+                    assertArrayEquals(frames.get(70), session.getEngine().getState(), "Amount " + amount);
+                }
+                assertEquals(size, Files.size(index), "The index needs to be built again.");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(index);
+        }
+    }
+
+    /* journals a game of undos past indexed states, returning the state after each entry */
+    private static List<long[]> record(Path file) {
+        GameSession session = new GameSession(7, 3, HanoiLogger.forFile(file.getFileName().toString()));
+        List<long[]> frames = new ArrayList<>();
+        frames.add(session.getEngine().getState());
+        int[] codes = new OptimalSolver(7).moves().toArray();
+        for (int i = 0; i < codes.length; i++) {
+            session.move(MoveCode.from(codes[i]), MoveCode.to(codes[i]));
+            frames.add(session.getEngine().getState());
+            if (i == 59) {
+                session.undoTo(50);
+                frames.add(session.getEngine().getState());
+                session.redoTo(55);
+                frames.add(session.getEngine().getState());
+                session.redoTo(60);
+                frames.add(session.getEngine().getState());
+            }
+        }
+        session.getJournal().closeLogger();
+        return frames;
+    }
+}
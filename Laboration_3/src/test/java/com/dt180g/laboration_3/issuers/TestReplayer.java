@@ -1,19 +1,34 @@
 package com.dt180g.laboration_3.issuers;
 
+import com.dt180g.laboration_3.invoker.GameSession;
 import com.dt180g.laboration_3.receiver.HanoiEngine;
+import com.dt180g.laboration_3.receiver.MoveCode;
+import com.dt180g.laboration_3.solver.OptimalSolver;
 import com.dt180g.laboration_3.support.AppConfig;
+import com.dt180g.laboration_3.support.HanoiLogger;
+import com.dt180g.laboration_3.support.JournalFormat;
+import com.dt180g.laboration_3.validation.MalformedJournalException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Unit tests isolated to replayer object.
@@ -21,11 +36,31 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
  * @author Erik Ström
  */
 public class TestReplayer {
+    private boolean defaultUseLog;
+    private JournalFormat defaultFormat;
+    private int defaultCheckpointInterval, defaultPipelineDepth;
+
     public TestReplayer() {
         AppConfig.setUseLog(false);
         AppConfig.setShowReplayMoves(false);
     }
 
+    @BeforeEach
+    public void setUp() {
+        defaultUseLog = AppConfig.shouldUseLog();
+        defaultFormat = AppConfig.getJournalFormat();
+        defaultCheckpointInterval = AppConfig.getJournalCheckpointInterval();
+        defaultPipelineDepth = AppConfig.getReplayPipelineDepth();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        AppConfig.setUseLog(defaultUseLog);
+        AppConfig.setJournalFormat(defaultFormat);
+        AppConfig.setJournalCheckpointInterval(defaultCheckpointInterval);
+        AppConfig.setReplayPipelineDepth(defaultPipelineDepth);
+    }
+
     private BufferedReader getReaderFromStream(String fileName) {
         AppConfig.setLogFileName(fileName);
         InputStream is = getClass().getClassLoader().getResourceAsStream(fileName);
@@ -38,7 +73,7 @@ public class TestReplayer {
                 () -> assertEquals(exp.get(0), engine.getTowerState(0)),
                 () -> assertEquals(exp.get(1), engine.getTowerState(1)),
                 () -> assertEquals(exp.get(2), engine.getTowerState(2)),
-                () -> assertEquals(exp.get(3), engine.getMoves()),
+                () -> assertEquals(exp.get(3).longValue(), engine.getMoves()),
                 () -> assertEquals(completed, engine.isGameCompleted())
         );
     }
@@ -66,4 +101,139 @@ public class TestReplayer {
         new Replayer(getReaderFromStream("HanoiTest4.log")).runReplay();
         runAsserts(Arrays.asList(1, 2, 0, 3), false);
     }
+
+    @Test
+    public void testReplayerWithJumps() throws IOException {
+        new Replayer(getReaderFromStream("HanoiTest5.log")).runReplay();
+        runAsserts(Arrays.asList(0, 2, 1, 4), false);
+    }
+
+    /**
+     * Tests that resuming starts from the latest checkpoint in every journal format, passes over a
+     * checkpoint undone past, and leaves out an entry torn at the end of the log.
+     */
+    @Test
+    public void testResumeFromCheckpoint() throws IOException, URISyntaxException {
+        AppConfig.setUseLog(true);
+        AppConfig.setJournalCheckpointInterval(100);
+        Path file = Path.of(AppConfig.getLogFilePath("Hanoi_resume_test.log"));
+        try {
+            for (JournalFormat format : JournalFormat.values()) {
+                AppConfig.setJournalFormat(format);
+                GameSession session = new GameSession(10, 3, HanoiLogger.forFile("Hanoi_resume_test.log"));
+                new OptimalSolver(10).moves().limit(1010)
+                        .forEach(code -> session.move(MoveCode.from(code), MoveCode.to(code)));
+                session.undoTo(995); // past the checkpoint at 1000 moves
+                session.redoMove();
+                session.getJournal().closeLogger();
+                if (format != JournalFormat.PACKED) Files.write(file, new byte[]{'3'}, StandardOpenOption.APPEND);
+
+                GameSession resumed = new GameSession(10, 3);
+                new Replayer(file, resumed).resume();
+                assertArrayEquals(session.getEngine().getState(), resumed.getEngine().getState(), format.name());
+                assertEquals(996, resumed.getEngine().getMoves(), format.name());
+                assertTrue(resumed.getManager().getUndoAmount() < 100,
+                        format + " needs to resume from a checkpoint, not from the start.");
+                assertEquals(14, resumed.getManager().getRedoAmount(), format.name());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Tests that replaying a log into a session journaling to it leaves the log untouched but for a
+     * torn entry at its end, restores the history, and goes on appending to the log, in every
+     * journal format.
+     */
+    @Test
+    public void testReplayLeavesLogUntouched() throws IOException, URISyntaxException {
+        AppConfig.setUseLog(true);
+        AppConfig.setJournalCheckpointInterval(100);
+        Path file = Path.of(AppConfig.getLogFilePath("Hanoi_replay_test.log"));
+        try {
+            for (JournalFormat format : JournalFormat.values()) {
+                AppConfig.setJournalFormat(format);
+                GameSession session = new GameSession(10, 3, HanoiLogger.forFile("Hanoi_replay_test.log"));
+                new OptimalSolver(10).moves().limit(250)
+                        .forEach(code -> session.move(MoveCode.from(code), MoveCode.to(code)));
+                session.undoTo(240);
+                session.getJournal().closeLogger();
+                byte[] log = Files.readAllBytes(file);
+                if (format != JournalFormat.PACKED) Files.write(file, new byte[]{'3'}, StandardOpenOption.APPEND);
+
+                GameSession replayed = new GameSession(HanoiLogger.forFile("Hanoi_replay_test.log"));
+                new Replayer(file, replayed).runReplay();
+                replayed.getJournal().flush();
+                assertArrayEquals(log, Files.readAllBytes(file), format + " log needs to be left as it was, without the torn entry.");
+                assertArrayEquals(session.getEngine().getState(), replayed.getEngine().getState(), format.name());
+                assertEquals(250, replayed.getManager().getUndoAmount() + replayed.getManager().getRedoAmount());
+
+                replayed.redoMove();
+                replayed.getJournal().closeLogger();
+                GameSession again = new GameSession(3, 3);
+                new Replayer(file, again).runReplay();
+                assertEquals(241, again.getEngine().getMoves(), format + " log needs to go on after the replay.");
+                assertEquals(9, again.getManager().getRedoAmount(), format.name());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Tests that a pipelined replay restores the same game as one on a single thread, in every
+     * journal format, reports its stalls, and passes on an error of the reader thread.
+     */
+    @Test
+    public void testPipelinedReplay() throws IOException, URISyntaxException {
+        AppConfig.setUseLog(true);
+        AppConfig.setJournalCheckpointInterval(1000);
+        Path file = Path.of(AppConfig.getLogFilePath("Hanoi_pipeline_test.log"));
+        try {
+            for (JournalFormat format : JournalFormat.values()) {
+                AppConfig.setJournalFormat(format);
+                GameSession session = new GameSession(14, 3, HanoiLogger.forFile("Hanoi_pipeline_test.log"));
+                new OptimalSolver(14).moves().forEach(code -> session.move(MoveCode.from(code), MoveCode.to(code)));
+                session.undoTo(10_000);
+                session.getJournal().closeLogger();
+                AppConfig.setUseLog(false);
+
+                GameSession single = new GameSession(3, 3);
+                Replayer sequential = new Replayer(file, single);
+                sequential.runReplay();
+                AppConfig.setReplayPipelineDepth(2);
+                GameSession piped = new GameSession(3, 3);
+                Replayer pipelined = new Replayer(file, piped);
+                pipelined.runReplay();
+                AppConfig.setReplayPipelineDepth(0);
+                AppConfig.setUseLog(true);
+
+                assertArrayEquals(session.getEngine().getState(), piped.getEngine().getState(), format.name());
+                assertEquals(single.getManager().getRedoAmount(), piped.getManager().getRedoAmount(), format.name());
+                assertEquals(sequential.getReport().records(), pipelined.getReport().records(), format.name());
+                assertTrue(pipelined.getReport().pipelined() && pipelined.getReport().readStall() >= 0
+                        && pipelined.getReport().applyStall() >= 0, format.name());
+            }
+            Files.write(file, "3\n1 3\n1 2\n3 x\n".getBytes(StandardCharsets.US_ASCII));
+            AppConfig.setReplayPipelineDepth(2);
+            MalformedJournalException e = assertThrows(MalformedJournalException.class,
+                    () -> new Replayer(file, new GameSession(3, 3)).runReplay());
+            assertEquals(12, e.getOffset());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /** Tests that an error thrown while reading ahead fails the replay, instead of ending it early. */
+    @Test
+    public void testPipelineReportsReaderError() {
+        long[] records = new long[8];
+        try (ReplayPipeline pipeline = new ReplayPipeline((batch, offset, length) -> {
+            throw new StackOverflowError();
+        }, 2, 4)) {
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> pipeline.next(records, 0, records.length));
+            assertTrue(e.getCause() instanceof StackOverflowError);
+        }
+    }
 }
@@ -0,0 +1,174 @@
+package com.dt180g.laboration_3.receiver;
+
+import com.dt180g.laboration_3.TestBase;
+import com.dt180g.laboration_3.solver.OptimalSolver;
+import com.dt180g.laboration_3.validation.InvalidMoveException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the hint computations, batch moves, result codes and snapshots of {@link HanoiEngine}.
+ */
+public class TestHanoiEngine extends TestBase {
+    private static final int DISCS = 5, STATES = 243;
+
+    /** Decodes a base-3 state index into tower bitmasks, digit d-1 holding the tower of disc d. */
+    private static long[] decode(int state) {
+        long[] towers = new long[3];
+        for (int disc = 0; disc < DISCS; disc++, state /= 3) towers[state % 3] |= 1L << disc;
+        return towers;
+    }
+
+    private static int encode(long[] towers) {
+        int state = 0;
+        for (int disc = DISCS - 1; disc >= 0; disc--) {
+            int tower = (towers[0] >> disc & 1) != 0 ? 0 : (towers[1] >> disc & 1) != 0 ? 1 : 2;
+            state = state * 3 + tower;
+        }
+        return state;
+    }
+
+    /** Computes exact distances to the goal by a breadth-first search over the whole state space. */
+    private int[] searchDistances() {
+        int[] dist = new int[STATES];
+        Arrays.fill(dist, -1);
+        int[] queue = new int[STATES];
+        int head = 0, tail = 0;
+        queue[tail++] = STATES - 1;
+        dist[STATES - 1] = 0;
+        while (head < tail) {
+            int state = queue[head++];
+            for (int from = 1; from <= 3; from++) {
+                for (int to = 1; to <= 3; to++) {
+                    engine.loadState(decode(state), 0);
+                    try {
+                        engine.performMove(from, to, true);
+                    } catch (RuntimeException e) {
+                        continue;
+                    }
+                    int next = encode(engine.getState());
+                    if (dist[next] < 0) {
+                        dist[next] = dist[state] + 1;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+        return dist;
+    }
+
+    /** Tests that the distance and hinted move are optimal from every legal configuration. */
+    @Test
+    public void testHintsAreOptimalFromAnyState() {
+        int[] dist = searchDistances();
+        for (int state = 0; state < STATES; state++) {
+            engine.loadState(decode(state), 0);
+            assertEquals(dist[state], engine.distanceToGoal(), "Distance of state " + state + " needs to be exact.");
+            int move = engine.nextBestMove();
+            if (dist[state] == 0) {
+                assertEquals(-1, move, "A completed game has no next move.");
+                continue;
+            }
+            engine.performMove(MoveCode.from(move), MoveCode.to(move), true);
+            assertEquals(dist[state] - 1, dist[encode(engine.getState())],
+                    "Hinted move from state " + state + " needs to get closer to the goal.");
+        }
+    }
+
+    /** Tests the distance of a fresh 64 disc game, which only fits as an unsigned value. */
+    @Test
+    public void testDistanceOfLargestGame() {
+        engine.resetGame(64);
+        assertEquals(-1L, engine.distanceToGoal(), "Distance needs to be 2^64-1.");
+        assertEquals(MoveCode.of(1, 2), engine.nextBestMove(), "Even disc amounts start towards the middle tower.");
+    }
+
+    /** Tests that hints are rejected for games with more than three towers. */
+    @Test
+    public void testHintsRequireThreeTowers() {
+        engine.resetGame(3, 4);
+        assertThrows(UnsupportedOperationException.class, engine::distanceToGoal);
+    }
+
+    /** Tests that a batch is applied as a whole, and that an invalid batch leaves the game untouched. */
+    @Test
+    public void testBatchIsAllOrNothing() {
+        engine.performMoves(new int[]{1, 1, 3}, new int[]{3, 2, 2});
+        long[] state = engine.getState();
+        assertEquals(3, engine.getMoves());
+
+        int[] from = {1, 2, 3}, to = {3, 1, 2};
+        assertThrows(InvalidMoveException.class, () -> engine.performMoves(from, to));
+        assertArrayEquals(state, engine.getState(), "A rejected batch needs to leave the towers untouched.");
+        assertEquals(3, engine.getMoves(), "A rejected batch needs to leave the move counter untouched.");
+    }
+
+    /** Tests that an observer thread only ever reads consistent snapshots while moves are made. */
+    @Test
+    public void testSnapshotsAreConsistent() {
+        HanoiEngine game = new HanoiEngine();
+        game.resetGame(12);
+        AtomicBoolean done = new AtomicBoolean();
+        CompletableFuture<Long> observer = CompletableFuture.supplyAsync(() -> {
+            long reads = 0, last = 0;
+            while (!done.get()) {
+                EngineSnapshot snap = game.snapshot();
+                long all = 0;
+                for (long tower : snap.getState()) {
+                    if ((all & tower) != 0) return -1L;
+                    all |= tower;
+                }
+                if (all != (1L << 12) - 1 || snap.getSequence() < last) return -1L;
+                last = snap.getSequence();
+                reads++;
+            }
+            return reads;
+        });
+        new OptimalSolver(12).moves()
+                .forEach(code -> game.performMove(MoveCode.from(code), MoveCode.to(code), true));
+        done.set(true);
+        assertTrue(observer.join() >= 0, "Observed snapshots need to be consistent.");
+        EngineSnapshot last = game.snapshot();
+        assertTrue(last.isGameCompleted(), "The last snapshot needs to show the completed game.");
+        assertEquals(4095, last.getMoves());
+    }
+
+    /** Tests that tryMove reports each kind of invalid move by code, leaving the game untouched. */
+    @Test
+    public void testTryMoveResults() {
+        assertAll("Validate result codes",
+                () -> assertEquals(MoveResult.NO_SUCH_TOWER, engine.tryMove(1, 4)),
+                () -> assertEquals(MoveResult.NO_DISC, engine.tryMove(2, 3)),
+                () -> assertEquals(MoveResult.SAME_TOWER, engine.tryMove(1, 1)),
+                () -> assertEquals(0, engine.getMoves()));
+        assertEquals(MoveResult.OK, engine.tryMove(1, 3));
+        assertEquals(MoveResult.LARGER_ON_SMALLER, engine.tryMove(1, 3));
+        assertEquals(1, engine.getMoves());
+    }
+
+    /** Tests the legal move mask against trying every move from every configuration. */
+    @Test
+    public void testLegalMovesMatchTryMove() {
+        for (int state = 0; state < STATES; state++) {
+            engine.loadState(decode(state), 0);
+            long legal = engine.legalMoves();
+            for (int from = 1; from <= 3; from++) {
+                for (int to = 1; to <= 3; to++) {
+                    engine.loadState(decode(state), 0);
+                    boolean valid = engine.tryMove(from, to) == MoveResult.OK;
+                    assertEquals(valid, (legal >>> MoveCode.of(from, to) & 1) != 0,
+                            "Move " + from + " " + to + " from state " + state);
+                }
+            }
+        }
+    }
+}
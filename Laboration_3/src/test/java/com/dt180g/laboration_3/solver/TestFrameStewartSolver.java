@@ -0,0 +1,59 @@
+package com.dt180g.laboration_3.solver;
+
+import com.dt180g.laboration_3.TestBase;
+import com.dt180g.laboration_3.receiver.MoveCode;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link FrameStewartSolver}.
+ */
+public class TestFrameStewartSolver extends TestBase {
+    /** Tests the known move counts of the four tower (Reve's puzzle) case. */
+    @Test
+    public void testFourTowerMoveAmounts() {
+        long[] expected = {1, 3, 5, 9, 13, 17, 25, 33, 41, 49, 65, 81, 97, 113, 129};
+        assertArrayEquals(expected, IntStream.rangeClosed(1, expected.length)
+                .mapToLong(n -> FrameStewartSolver.moveAmount(n, 4)).toArray());
+    }
+
+    /** Tests that the three tower case matches the optimal solver. */
+    @Test
+    public void testThreeTowersMatchOptimal() {
+        assertArrayEquals(new OptimalSolver(10).moves().toArray(), new FrameStewartSolver(10, 3).moves().toArray(),
+                "Three tower solution needs to equal the optimal solution.");
+    }
+
+    /** Tests that solutions for three to six towers are legal and complete the game. */
+    @Test
+    public void testSolutionsCompleteGame() {
+        IntStream.rangeClosed(3, 6).forEach(towers -> IntStream.rangeClosed(2, 12).forEach(discs -> {
+            engine.resetGame(discs, towers);
+            FrameStewartSolver solver = new FrameStewartSolver(discs, towers);
+            solver.iterator().forEachRemaining(
+                    (int code) -> engine.performMove(MoveCode.from(code), MoveCode.to(code), true));
+            assertAll("Validate solution of " + discs + " discs on " + towers + " towers",
+                    () -> assertTrue(engine.isGameCompleted()),
+                    () -> assertEquals(solver.getMoveAmount(), engine.getMoves()));
+        }));
+    }
+
+    /** Tests that the largest four tower game is solved in its Frame–Stewart amount of moves. */
+    @Test
+    public void testLargestFourTowerSolve() {
+        engine.resetGame(64, 4);
+        FrameStewartSolver solver = new FrameStewartSolver(64, 4);
+        solver.iterator().forEachRemaining(
+                (int code) -> engine.performMove(MoveCode.from(code), MoveCode.to(code), true));
+        assertAll("Validate solution of 64 discs on 4 towers",
+                () -> assertEquals(18433, solver.getMoveAmount()),
+                () -> assertEquals(18433, engine.getMoves()),
+                () -> assertTrue(engine.isGameCompleted()));
+    }
+}
@@ -0,0 +1,119 @@
+package com.dt180g.laboration_3.solver;
+
+import com.dt180g.laboration_3.TestBase;
+import com.dt180g.laboration_3.receiver.MoveCode;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link OptimalSolver} and its cursors.
+ */
+public class TestOptimalSolver extends TestBase {
+    /** Tests that the three disc solution matches the known optimal moves. */
+    @Test
+    public void testThreeDiscSolution() {
+        int[] expected = super.moves.stream()
+                .map(move -> move.split(" "))
+                .mapToInt(tmp -> MoveCode.of(Integer.parseInt(tmp[0]), Integer.parseInt(tmp[1])))
+                .toArray();
+        assertArrayEquals(expected, new OptimalSolver(3).moves().toArray(),
+                "Solution of three discs needs to match the optimal moves.");
+    }
+
+    /** Tests that solutions complete the game in 2^n-1 legal moves for a range of disc amounts. */
+    @Test
+    public void testSolutionsCompleteGame() {
+        IntStream.rangeClosed(2, 12).forEach(discs -> {
+            engine.resetGame(discs);
+            new OptimalSolver(discs).cursor().forEachRemaining(
+                    (int code) -> engine.performMove(MoveCode.from(code), MoveCode.to(code), true));
+            assertAll("Validate solution of " + discs + " discs",
+                    () -> assertTrue(engine.isGameCompleted()),
+                    () -> assertEquals((1L << discs) - 1, engine.getMoves()));
+        });
+    }
+
+    /** Tests that a paused cursor continues exactly where it stopped. */
+    @Test
+    public void testCursorResumes() {
+        OptimalSolver solver = new OptimalSolver(10);
+        MoveCursor cursor = solver.cursor();
+        int[] first = IntStream.range(0, 300).map(i -> cursor.nextInt()).toArray();
+        long checkpoint = cursor.getPosition();
+
+        MoveCursor resumed = solver.cursor(checkpoint);
+        int[] rest = IntStream.generate(resumed::nextInt).limit(solver.getMoveAmount() - checkpoint).toArray();
+        assertFalse(resumed.hasNext(), "Resumed cursor needs to end with the solution.");
+        assertArrayEquals(solver.moves().toArray(), IntStream.concat(IntStream.of(first), IntStream.of(rest)).toArray(),
+                "Resumed moves need to continue the paused ones.");
+    }
+
+    /** Tests that a parallel stream over the solution yields the same ordered moves. */
+    @Test
+    public void testParallelStreamOrder() {
+        OptimalSolver solver = new OptimalSolver(16);
+        assertArrayEquals(solver.moves().toArray(), solver.moves().parallel().toArray(),
+                "Parallel solution needs to match sequential solution.");
+    }
+
+    /** Tests that random access matches the state and move reached by replaying the solution. */
+    @Test
+    public void testRandomAccessMatchesReplay() {
+        OptimalSolver solver = new OptimalSolver(8);
+        engine.resetGame(8);
+        MoveCursor cursor = solver.cursor();
+        while (cursor.hasNext()) {
+            long done = cursor.getPosition();
+            long[] state = solver.stateAt(done);
+            for (int t = 0; t < 3; t++) {
+                assertEquals(Long.bitCount(state[t]), engine.getTowerState(t),
+                        "Tower " + t + " after " + done + " moves needs to match replay.");
+            }
+            int code = cursor.nextInt();
+            assertEquals(code, solver.moveAt(done), "Move " + done + " needs to match the cursor.");
+            engine.performMove(MoveCode.from(code), MoveCode.to(code), true);
+        }
+    }
+
+    /** Tests loading the state of a huge solution directly into the engine. */
+    @Test
+    public void testLoadIntoEngine() {
+        OptimalSolver solver = new OptimalSolver(50);
+        long index = 1_000_000_000_000L;
+        solver.loadInto(engine, index);
+
+        int code = solver.moveAt(index);
+        engine.performMove(MoveCode.from(code), MoveCode.to(code), true);
+        long[] next = solver.stateAt(index + 1);
+        assertAll("Validate loaded state",
+                () -> assertEquals(50, engine.getDiscAmount()),
+                () -> assertEquals(index + 1, engine.getMoves()),
+                () -> assertArrayEquals(IntStream.range(0, 3).map(t -> Long.bitCount(next[t])).toArray(),
+                        IntStream.range(0, 3).map(engine::getTowerState).toArray()));
+        solver.loadInto(engine, solver.getMoveAmount());
+        assertTrue(engine.isGameCompleted(), "State after the last move needs to be completed.");
+    }
+
+    /** Tests that configurations which are not a legal game are rejected. */
+    @Test
+    public void testLoadStateRejectsIllegal() {
+        assertThrows(IllegalArgumentException.class, () -> engine.loadState(new long[]{0b11, 0b10, 0}, 0),
+                "A disc on two towers needs to be rejected.");
+        assertThrows(IllegalArgumentException.class, () -> engine.loadState(new long[]{0b101, 0, 0}, 0),
+                "A missing disc needs to be rejected.");
+    }
+
+    /** Tests the move amount of the largest solution, which only fits as an unsigned value. */
+    @Test
+    public void testLargestMoveAmount() {
+        assertEquals("18446744073709551615", Long.toUnsignedString(new OptimalSolver(64).getMoveAmount()));
+    }
+}
@@ -0,0 +1,49 @@
+package com.dt180g.laboration_3.solver;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link ParallelSolutionRunner}.
+ */
+public class TestParallelSolutionRunner {
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    /** Shuts the pool of the test down. */
+    @AfterEach
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /** Tests that a chunked verification of a full solution passes and covers every move. */
+    @Test
+    public void testVerifySolution() {
+        OptimalSolver solver = new OptimalSolver(16);
+        ParallelSolutionRunner.SolutionReport report = new ParallelSolutionRunner(solver, pool, 1000).verify();
+        assertAll("Validate verification report",
+                () -> assertTrue(report.valid()),
+                () -> assertEquals(66, report.chunks().size()),
+                () -> assertEquals(solver.getMoveAmount(), report.moves()));
+    }
+
+    /** Tests that chunks generated in parallel reassemble into the sequential solution. */
+    @Test
+    public void testGenerateSolution() {
+        OptimalSolver solver = new OptimalSolver(12);
+        int[] generated = new int[(int) solver.getMoveAmount()];
+        ParallelSolutionRunner.SolutionReport report = new ParallelSolutionRunner(solver, pool, 100)
+                .generate((start, moves, length) -> System.arraycopy(moves, 0, generated, (int) start, length));
+
+        int[] expected = solver.moves().toArray();
+        assertArrayEquals(expected, generated, "Generated chunks need to match the sequential solution.");
+        assertEquals(java.util.Arrays.stream(expected).asLongStream().sum(), report.checksum(),
+                "Checksum needs to be the sum of all move codes.");
+    }
+}
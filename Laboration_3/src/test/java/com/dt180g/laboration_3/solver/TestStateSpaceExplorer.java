@@ -0,0 +1,70 @@
+package com.dt180g.laboration_3.solver;
+
+import com.dt180g.laboration_3.TestBase;
+import com.dt180g.laboration_3.receiver.HanoiEngine;
+import com.dt180g.laboration_3.receiver.MoveCode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link StateSpaceExplorer} and {@link DistanceTable}.
+ */
+public class TestStateSpaceExplorer extends TestBase {
+    @TempDir
+    Path dir;
+
+    /** Tests that explored distances of every three tower configuration match the closed form. */
+    @Test
+    public void testThreeTowerDistances() throws IOException {
+        DistanceTable table = new StateSpaceExplorer(6, 3).explore(dir.resolve("d6t3.bin"));
+        HanoiEngine game = new HanoiEngine();
+        game.resetGame(6, 3);
+        for (long state = 0; state < table.getStateAmount(); state++) {
+            game.loadState(decode(state, 6, 3), 0);
+            assertEquals(game.distanceToGoal(), table.distance(state), "Distance of state " + state);
+        }
+        assertAll("Validate table of 6 discs on 3 towers",
+                () -> assertEquals(729, table.getStateAmount()),
+                () -> assertEquals(63, table.getMaxDistance()),
+                () -> assertEquals(63, table.distanceOf(start(6, 3))));
+    }
+
+    /** Tests hints from an explored four tower table, before and after reopening it. */
+    @Test
+    public void testFourTowerHints() throws IOException {
+        Path file = dir.resolve("d5t4.bin");
+        new StateSpaceExplorer(5, 4).explore(file);
+        DistanceTable table = DistanceTable.open(file);
+        HanoiEngine game = new HanoiEngine();
+        game.resetGame(5, 4);
+        game.setDistanceOracle(table);
+        assertEquals(13, game.distanceToGoal(), "Five discs on four towers need 13 moves.");
+        while (!game.isGameCompleted()) {
+            int code = game.nextBestMove();
+            game.performMove(MoveCode.from(code), MoveCode.to(code), true);
+        }
+        assertAll("Validate game followed by hints",
+                () -> assertTrue(table.covers(5, 4)),
+                () -> assertEquals(13, game.getMoves()),
+                () -> assertEquals(0, game.distanceToGoal()));
+    }
+
+    private static long[] start(final int discs, final int towers) {
+        long[] masks = new long[towers];
+        masks[0] = (1L << discs) - 1;
+        return masks;
+    }
+
+    private static long[] decode(long state, final int discs, final int towers) {
+        long[] masks = new long[towers];
+        for (int disc = 0; disc < discs; disc++, state /= towers) masks[(int) (state % towers)] |= 1L << disc;
+        return masks;
+    }
+}
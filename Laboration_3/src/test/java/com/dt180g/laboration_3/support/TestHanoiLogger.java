@@ -1,21 +1,29 @@
 package com.dt180g.laboration_3.support;
 
+import com.dt180g.laboration_3.invoker.GameSession;
+import com.dt180g.laboration_3.issuers.Replayer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInfo;
 
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -24,6 +32,10 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
  * @author Erik Ström
  */
 public class TestHanoiLogger {
+    private JournalFormat defaultFormat;
+    private int defaultGroupCommit, defaultQueueCapacity;
+    private boolean defaultShowReplayMoves, defaultAsync;
+
     /** Constructor that sets the log file name and enables logging for the test. */
     public TestHanoiLogger() {
         AppConfig.setLogFileName("Hanoi_test.log");
@@ -32,14 +44,24 @@ public class TestHanoiLogger {
 
     @BeforeEach
     public void setUp(TestInfo testInfo) {
+        defaultFormat = AppConfig.getJournalFormat();
+        defaultGroupCommit = AppConfig.getJournalGroupCommit();
+        defaultQueueCapacity = AppConfig.getJournalQueueCapacity();
+        defaultShowReplayMoves = AppConfig.shouldShowReplayMoves();
+        defaultAsync = AppConfig.isJournalAsync();
         if(!testInfo.getTags().contains("SkipBuildup")) {
             HanoiLogger.getInstance().resetLogger();
         }
     }
 
-    /** Deletes the log file after each test case. */
+    /** Restores the journal settings, and deletes the log file after each test case. */
     @AfterEach
     public void tearDown(TestInfo testInfo) throws IOException, URISyntaxException {
+        AppConfig.setJournalFormat(defaultFormat);
+        AppConfig.setJournalGroupCommit(defaultGroupCommit);
+        AppConfig.setJournalQueueCapacity(defaultQueueCapacity);
+        AppConfig.setShowReplayMoves(defaultShowReplayMoves);
+        AppConfig.setJournalAsync(defaultAsync);
         if(!testInfo.getTags().contains("SkipCleanup")) {
             Files.deleteIfExists(Path.of(AppConfig.getLogFilePath()));
         }
@@ -72,4 +94,161 @@ public class TestHanoiLogger {
                     "Contents of log isn't correct!");
         }
     }
+
+    /** Tests that a binary journal written in group commits replays to the same game. */
+    @Test
+    @Tag("SkipBuildup")
+    public void testBinaryJournalReplays() throws URISyntaxException, IOException {
+        AppConfig.setJournalFormat(JournalFormat.BINARY);
+        AppConfig.setJournalGroupCommit(4);
+        AppConfig.setShowReplayMoves(false);
+        Path file = Path.of(AppConfig.getLogFilePath("Hanoi_binary_test.log"));
+        try {
+            GameSession session = new GameSession(3, 3, HanoiLogger.forFile("Hanoi_binary_test.log"));
+            List.of("1 3", "1 2", "3 2", "1 3", "2 1").stream().map(move -> move.split(" "))
+                    .forEach(tmp -> session.move(Integer.parseInt(tmp[0]), Integer.parseInt(tmp[1])));
+            session.undoTo(2);
+            session.redoMove();
+            session.getJournal().closeLogger();
+
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+                assertEquals(JournalRecord.MAGIC, in.readLong(), "A binary journal needs to start with its magic.");
+                assertEquals(JournalRecord.header(3, 3), in.readLong());
+            }
+            assertEquals(9L * JournalRecord.SIZE, Files.size(file), "Every entry needs a record of its own.");
+            JournalCompactor.compact(file);
+            assertEquals(8L * JournalRecord.SIZE, Files.size(file), "Undo and redo need to cancel out.");
+
+            GameSession replayed = new GameSession(3, 3);
+            new Replayer(file, replayed).runReplay();
+            assertArrayEquals(session.getEngine().getState(), replayed.getEngine().getState());
+            assertEquals(session.getEngine().getMoves(), replayed.getEngine().getMoves());
+            assertEquals(2, replayed.getManager().getRedoAmount(), "The redo history needs to be restored.");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /** Tests that entries logged by several threads through a small asynchronous queue all reach the file. */
+    @Test
+    @Tag("SkipBuildup")
+    public void testAsyncLoggingFromThreads() throws URISyntaxException, IOException, InterruptedException {
+        AppConfig.setJournalAsync(true);
+        AppConfig.setJournalQueueCapacity(8);
+        Path file = Path.of(AppConfig.getLogFilePath("Hanoi_async_test.log"));
+        try {
+            HanoiLogger journal = HanoiLogger.forFile("Hanoi_async_test.log");
+            journal.logHeader(3, 3);
+            Thread[] threads = IntStream.range(0, 4).mapToObj(t -> new Thread(() -> {
+                for (int i = 0; i < 1000; i++) journal.logMove(1, t + 2);
+            })).toArray(Thread[]::new);
+            for (Thread thread : threads) thread.start();
+            for (Thread thread : threads) thread.join();
+            journal.flush();
+            assertEquals(4001, Files.readAllLines(file).size(), "Flushing needs to write every logged entry.");
+
+            journal.logUndo(4);
+            journal.closeLogger();
+            List<String> lines = Files.readAllLines(file);
+            assertAll("Validate the asynchronous journal",
+                    () -> assertEquals("3", lines.get(0)),
+                    () -> assertEquals(1000, lines.stream().filter("1 3"::equals).count()),
+                    () -> assertEquals(1000, lines.stream().filter("1 5"::equals).count()),
+                    () -> assertEquals("U 4", lines.get(lines.size() - 1)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /** Tests that compacting a live journal keeps its net game, and that replay restores it. */
+    @Test
+    @Tag("SkipBuildup")
+    public void testCompactionKeepsNetGame() throws URISyntaxException, IOException {
+        AppConfig.setShowReplayMoves(false);
+        Path file = Path.of(AppConfig.getLogFilePath("Hanoi_compact_test.log"));
+        try {
+            GameSession session = new GameSession(3, 3, HanoiLogger.forFile("Hanoi_compact_test.log"));
+            List.of("1 3", "1 2", "3 2", "1 3").stream().map(move -> move.split(" "))
+                    .forEach(tmp -> session.move(Integer.parseInt(tmp[0]), Integer.parseInt(tmp[1])));
+            session.undoTo(1);
+            session.move(1, 2);
+            session.undoMove();
+            session.redoMove();
+            session.compactJournal();
+            assertEquals(List.of("3", "1 3", "1 2"), Files.readAllLines(file), "Undone moves need to cancel out.");
+
+            session.move(3, 2);
+            session.move(2, 1);
+            session.undoMove();
+            session.compactJournal();
+            assertEquals(List.of("3", "1 3", "1 2", "3 2", "2 1", "U"), Files.readAllLines(file),
+                    "Moves to redo need to be kept as a single undo.");
+            session.getJournal().closeLogger();
+
+            GameSession replayed = new GameSession(3, 3);
+            new Replayer(file, replayed).runReplay();
+            assertArrayEquals(session.getEngine().getState(), replayed.getEngine().getState());
+            assertEquals(3, replayed.getEngine().getMoves());
+            assertEquals(1, replayed.getManager().getRedoAmount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Tests that compacting keeps a checkpoint of a state restored mid-game, with the moves after
+     * it, and leaves out a torn last line.
+     */
+    @Test
+    @Tag("SkipBuildup")
+    public void testCompactionKeepsRestoredState() throws URISyntaxException, IOException {
+        AppConfig.setShowReplayMoves(false);
+        Path file = Path.of(AppConfig.getLogFilePath("Hanoi_compact_test.log"));
+        try {
+            GameSession session = new GameSession(3, 3, HanoiLogger.forFile("Hanoi_compact_test.log"));
+            session.move(1, 3);
+            session.move(1, 2);
+            session.restore(new long[]{0b100, 0b011, 0}, 7);
+            session.move(2, 3);
+            session.getJournal().closeLogger();
+            Files.write(file, new byte[]{'1'}, StandardOpenOption.APPEND);
+            JournalCompactor.compact(file);
+            assertEquals(3, Files.readAllLines(file).size(), "The header, the checkpoint and a move need to be kept.");
+
+            GameSession replayed = new GameSession(3, 3);
+            new Replayer(file, replayed).runReplay();
+            assertArrayEquals(session.getEngine().getState(), replayed.getEngine().getState());
+            assertEquals(8, replayed.getEngine().getMoves());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /** Tests that compacting skips a checkpoint record of a length no checkpoint has. */
+    @Test
+    @Tag("SkipBuildup")
+    public void testCompactionSkipsGarbageCheckpoint() throws URISyntaxException, IOException {
+        AppConfig.setShowReplayMoves(false);
+        AppConfig.setJournalFormat(JournalFormat.BINARY);
+        Path file = Path.of(AppConfig.getLogFilePath("Hanoi_compact_test.log"));
+        try {
+            GameSession session = new GameSession(3, 3, HanoiLogger.forFile("Hanoi_compact_test.log"));
+            session.move(1, 3);
+            session.move(1, 2);
+            session.getJournal().closeLogger();
+            ByteBuffer garbage = ByteBuffer.allocate(2 * JournalRecord.SIZE)
+                    .putLong((long) JournalRecord.CHECKPOINT << 60 | 0x0FFF_FFFF_FFFF_FFFFL)
+                    .putLong(JournalRecord.move(3, 2))
+                    .flip();
+            Files.write(file, garbage.array(), StandardOpenOption.APPEND);
+            JournalCompactor.compact(file);
+
+            GameSession replayed = new GameSession(3, 3);
+            new Replayer(file, replayed).runReplay();
+            assertEquals(3, replayed.getEngine().getMoves());
+            assertEquals(2, replayed.getEngine().getTowerState(1));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
 }
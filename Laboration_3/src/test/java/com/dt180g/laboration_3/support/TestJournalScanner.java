@@ -0,0 +1,71 @@
+package com.dt180g.laboration_3.support;
+
+import com.dt180g.laboration_3.validation.MalformedJournalException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for {@link JournalScanner}.
+ */
+public class TestJournalScanner {
+
+    /**
+     * Tests that every kind of line parses to its record across small mapping windows, skipping
+     * blank lines and leaving out a torn last line.
+     */
+    @Test
+    public void testEntriesParse() throws URISyntaxException, IOException {
+        long[] checkpoint = JournalRecord.checkpoint(new long[]{0b1001, 0b0110, 0, 0, 0}, 12, 9);
+        String log = "4 5\n1 3\r\n  \n2 1\nU\nR 12\n" + JournalRecord.formatCheckpoint(checkpoint) + "\n3 1\n1";
+        long[] expected = {JournalRecord.move(1, 3), JournalRecord.move(2, 1), JournalRecord.undo(1),
+                JournalRecord.redo(12), checkpoint[0], checkpoint[1], checkpoint[2], checkpoint[3], checkpoint[4],
+                checkpoint[5], checkpoint[6], checkpoint[7], checkpoint[8], JournalRecord.move(3, 1)};
+        Path file = write("Hanoi_scanner_test.log", log);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            JournalScanner scanner = new JournalScanner(channel, 48);
+            long[] records = new long[32];
+            int n = 0;
+            for (int read; (read = scanner.next(records, n, 3)) > 0; ) n += read;
+            assertEquals(JournalRecord.header(4, 5), scanner.getHeader());
+            assertArrayEquals(expected, Arrays.copyOf(records, n));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /** Tests that a malformed line is rejected with the offset of its first byte at fault. */
+    @Test
+    public void testMalformedLineOffset() throws URISyntaxException, IOException {
+        String[] logs = {"3\n1 3\n1 x\n", "3\n1 3\nU5\n", "3\n1 99\n", "\n"};
+        long[] offsets = {8, 7, 4, 0};
+        Path file = Path.of(AppConfig.getLogFilePath("Hanoi_scanner_test.log"));
+        try {
+            for (int i = 0; i < logs.length; i++) {
+                write("Hanoi_scanner_test.log", logs[i]);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    MalformedJournalException e = assertThrows(MalformedJournalException.class,
+                            () -> new JournalScanner(channel).next(new long[8], 0, 8));
+                    assertEquals(offsets[i], e.getOffset(), logs[i]);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static Path write(String fileName, String log) throws URISyntaxException, IOException {
+        return Files.write(Path.of(AppConfig.getLogFilePath(fileName)), log.getBytes(StandardCharsets.US_ASCII));
+    }
+}
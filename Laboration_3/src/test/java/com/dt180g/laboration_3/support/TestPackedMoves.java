@@ -0,0 +1,151 @@
+package com.dt180g.laboration_3.support;
+
+import com.dt180g.laboration_3.invoker.GameSession;
+import com.dt180g.laboration_3.issuers.Replayer;
+import com.dt180g.laboration_3.receiver.MoveCode;
+import com.dt180g.laboration_3.solver.OptimalSolver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link PackedMoves}.
+ */
+public class TestPackedMoves {
+    private boolean defaultUseLog, defaultShowReplayMoves;
+    private JournalFormat defaultFormat;
+
+    @BeforeEach
+    public void setUp() {
+        defaultUseLog = AppConfig.shouldUseLog();
+        defaultShowReplayMoves = AppConfig.shouldShowReplayMoves();
+        defaultFormat = AppConfig.getJournalFormat();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        AppConfig.setUseLog(defaultUseLog);
+        AppConfig.setShowReplayMoves(defaultShowReplayMoves);
+        AppConfig.setJournalFormat(defaultFormat);
+    }
+
+    /** Tests that every kind of entry is unpacked as packed, for few and many towers. */
+    @Test
+    public void testRecordsRoundTrip() {
+        for (int towers : new int[]{3, 4, 8}) {
+            long[] records = {
+                    JournalRecord.header(5, towers), JournalRecord.move(1, 3), JournalRecord.move(towers, 1),
+                    JournalRecord.undo(1), JournalRecord.undo(2), JournalRecord.redo(1),
+                    JournalRecord.redo((1L << 40) + 3), JournalRecord.move(2, towers)};
+            ByteBuffer out = ByteBuffer.allocate(64);
+            out.putLong(PackedMoves.MAGIC).putLong(records[0]);
+            PackedMoves.Encoder encoder = new PackedMoves.Encoder(towers);
+            for (int i = 1; i < records.length; i++) encoder.record(records[i], out);
+            encoder.align(out);
+            byte[] journal = new byte[out.position()];
+            out.flip().get(journal);
+            assertArrayEquals(records, PackedMoves.decode(journal), "Records of " + towers + " towers");
+        }
+        assertEquals(3, PackedMoves.width(3), "Six moves and an undo need to fit in three bits.");
+        assertThrows(IllegalArgumentException.class, () -> PackedMoves.decode(new byte[16]));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PackedMoves.Encoder(3).record(JournalRecord.undo(0), ByteBuffer.allocate(8)),
+                "An undo of nothing would read as a checkpoint.");
+    }
+
+    /** Tests that a long solution packs to a tenth of its text journal. */
+    @Test
+    public void testSolutionShrinks() {
+        OptimalSolver solver = new OptimalSolver(16);
+        int[] codes = solver.moves().toArray();
+        int[] from = new int[codes.length], to = new int[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            from[i] = MoveCode.from(codes[i]);
+            to[i] = MoveCode.to(codes[i]);
+        }
+        byte[] journal = PackedMoves.encode(16, 3, from, to);
+        long[] records = PackedMoves.decode(journal);
+        assertAll("Validate the packed solution",
+                () -> assertTrue(journal.length * 10L <= codes.length * 4L, "Packed size: " + journal.length),
+                () -> assertEquals(codes.length + 1, records.length),
+                () -> assertEquals(JournalRecord.move(from[777], to[777]), records[778]));
+    }
+
+    /**
+     * Tests that the end of the last whole entry is found from the tail of a journal cut at every
+     * byte, across checkpoints and windows, as when unpacking all of it.
+     */
+    @Test
+    public void testEndFoundFromTail() throws URISyntaxException, IOException {
+        ByteBuffer out = ByteBuffer.allocate(512);
+        out.putLong(PackedMoves.MAGIC).putLong(JournalRecord.header(4, 3));
+        PackedMoves.Encoder encoder = new PackedMoves.Encoder(3);
+        int[] codes = new OptimalSolver(4).moves().toArray();
+        for (int i = 0; i < codes.length; i++) {
+            encoder.move(MoveCode.from(codes[i]), MoveCode.to(codes[i]), out);
+            if (i % 6 == 5) encoder.checkpoint(JournalRecord.checkpoint(new long[]{0b1, 0b110, 0b1000}, i, i), out);
+        }
+        encoder.record(JournalRecord.redo(1L << 33), out);
+        byte[] journal = Arrays.copyOf(out.array(), out.position());
+        Path file = Files.write(Path.of(AppConfig.getLogFilePath("Hanoi_packed_end_test.log")), journal);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int size = 2 * JournalRecord.SIZE; size <= journal.length; size++) {
+                PackedMoves.Decoder decoder = new PackedMoves.Decoder(3,
+                        ByteBuffer.wrap(journal, 0, size).position(2 * JournalRecord.SIZE));
+                while (decoder.next(new long[64], 0, 64) > 0) { }
+                assertEquals(2 * JournalRecord.SIZE * 8 + decoder.getEnd(), PackedMoves.end(channel, 3, size, 64),
+                        "Journal cut at byte " + size);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Tests that a packed journal replays to the same game, both while open, its unfinished byte
+     * padded, and once closed.
+     */
+    @Test
+    public void testSessionJournalReplays() throws URISyntaxException, IOException {
+        AppConfig.setJournalFormat(JournalFormat.PACKED);
+        AppConfig.setUseLog(true);
+        AppConfig.setShowReplayMoves(false);
+        Path file = Path.of(AppConfig.getLogFilePath("Hanoi_packed_test.log"));
+        try {
+            GameSession session = new GameSession(4, 3, HanoiLogger.forFile("Hanoi_packed_test.log"));
+            new OptimalSolver(4).moves().limit(9).forEach(code -> session.move(MoveCode.from(code), MoveCode.to(code)));
+            session.undoTo(6);
+            session.redoMove();
+
+            GameSession open = new GameSession(4, 3);
+            new Replayer(file, open).runReplay();
+            assertArrayEquals(session.getEngine().getState(), open.getEngine().getState());
+
+            session.getJournal().closeLogger();
+            assertEquals(2 * JournalRecord.SIZE + 8, Files.size(file), "Nine moves, an undo and a redo need eight bytes.");
+            GameSession closed = new GameSession(4, 3);
+            new Replayer(file, closed).runReplay();
+            assertAll("Validate the replayed game",
+                    () -> assertArrayEquals(session.getEngine().getState(), closed.getEngine().getState()),
+                    () -> assertEquals(7, closed.getEngine().getMoves()),
+                    () -> assertEquals(2, closed.getManager().getRedoAmount()));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
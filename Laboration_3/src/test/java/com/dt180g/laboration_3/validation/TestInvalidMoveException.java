@@ -1,11 +1,13 @@
 package com.dt180g.laboration_3.validation;
 
 import com.dt180g.laboration_3.TestBase;
+import com.dt180g.laboration_3.receiver.MoveResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
@@ -53,4 +55,16 @@ public class TestInvalidMoveException extends TestBase {
         assertThrows(InvalidMoveException.class, () -> engine.performMove(1, 1, false),
                 "InvalidMoveException needs to be thrown if the same tower is used as destination.");
     }
+
+    /**
+     * Tests that a move rejected by result code is shown with the same message as the
+     * InvalidMoveException thrown for it.
+     */
+    @Test
+    public void testInvalidMoveExceptionFormatMatchesMessage() {
+        int result = engine.tryMove(1, 1);
+        InvalidMoveException e = assertThrows(InvalidMoveException.class, () -> engine.performMove(1, 1, false));
+        assertEquals(e.getMessage(), InvalidMoveException.format(MoveResult.message(result)),
+                "A rejected move needs to be shown with the message of its exception.");
+    }
 }